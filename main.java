@@ -5,9 +5,20 @@
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 public final class TrumpSim {
 
@@ -22,31 +33,84 @@ public final class TrumpSim {
     private final int httpPort;
     private final XenonResponseBank responseBank;
     private final TrumpSimEngine engine;
-    private ServerSocket serverSocket;
+    private final ShardRouter shards;
+    private final Lanes lanes = new Lanes();
+    private ServerSocketChannel serverChannel;
+    /** Unix domain socket to listen on, alongside the TCP port unless httpPort is -1. */
+    private Path unixPath;
     private ExecutorService executor;
+    private boolean startupProbe;
+    /** Serve /admin/* and /shards to any peer, not just loopback and Unix socket ones. */
+    private boolean publicAdmin;
+    private TrafficCapture capture;
 
     public TrumpSim(int httpPort) {
+        this(httpPort, ScoringModel.defaults(), 0);
+    }
+
+    private TrumpSim(int httpPort, ScoringModel scoring, int shardCount) {
         this.httpPort = httpPort;
         this.responseBank = new XenonResponseBank();
-        this.engine = new TrumpSimEngine(responseBank);
+        this.engine = new TrumpSimEngine(responseBank, scoring);
+        this.shards = shardCount > 0 ? new ShardRouter(shardCount, scoring) : null;
     }
 
     public static void main(String[] args) {
         int port = DEFAULT_HTTP_PORT;
+        boolean portGiven = false;
+        String unixPath = null;
+        String weights = System.getProperty(TrumpSimConfig.WEIGHTS_PROPERTY);
+        int shardCount = 0;
+        String capturePath = null;
+        String hotSnapshot = null;
         for (int i = 0; i < args.length; i++) {
             if ("--port".equals(args[i]) && i + 1 < args.length) {
-                try { port = Integer.parseInt(args[i + 1]); } catch (NumberFormatException e) { }
-                break;
+                try { port = Integer.parseInt(args[i + 1]); portGiven = true; } catch (NumberFormatException e) { }
+            } else if ("--unix".equals(args[i]) && i + 1 < args.length) {
+                unixPath = args[i + 1];
+            } else if ("--weights".equals(args[i]) && i + 1 < args.length) {
+                weights = args[i + 1];
+            } else if ("--shards".equals(args[i]) && i + 1 < args.length) {
+                if ("auto".equals(args[i + 1])) shardCount = Runtime.getRuntime().availableProcessors();
+                else try { shardCount = Integer.parseInt(args[i + 1]); } catch (NumberFormatException e) { }
+            } else if ("--capture".equals(args[i]) && i + 1 < args.length) {
+                capturePath = args[i + 1];
+            } else if ("--hot-snapshot".equals(args[i]) && i + 1 < args.length) {
+                hotSnapshot = args[i + 1];
+            }
+        }
+        if (unixPath != null && !portGiven) port = -1;
+        ScoringModel scoring = null;
+        try {
+            scoring = ScoringModel.load(weights);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot load weights " + weights + ": " + e.getMessage());
+            System.exit(1);
+        }
+        TrumpSim app = new TrumpSim(port, scoring, shardCount);
+        if (unixPath != null) app.unixPath = Path.of(unixPath);
+        if (hotSnapshot != null) HeavyHitters.snapshotEvery(Path.of(hotSnapshot), HeavyHitters.SNAPSHOT_SECONDS, app::hot);
+        if (capturePath != null) {
+            try {
+                app.capture = TrafficCapture.open(capturePath);
+            } catch (IOException e) {
+                System.err.println("Cannot open capture file " + capturePath + ": " + e.getMessage());
+                System.exit(1);
             }
         }
-        TrumpSim app = new TrumpSim(port);
         app.run(args);
     }
 
     private void run(String[] args) {
         boolean cli = args.length > 0 && "--cli".equals(args[0]);
+        startupProbe = Arrays.asList(args).contains("--startup-probe");
+        publicAdmin = Arrays.asList(args).contains("--public-admin");
         if (cli) {
             runCli();
+        } else if (Arrays.asList(args).contains("--bench-scoring")) {
+            ScoringBench.run();
+        } else if (Arrays.asList(args).contains("--replay")) {
+            TrafficReplay.run(this, args);
         } else {
             startHttpServer();
         }
@@ -69,65 +133,191 @@ public final class TrumpSim {
 
     private void startHttpServer() {
         try {
-            serverSocket = new ServerSocket(httpPort);
-            executor = Executors.newCachedThreadPool();
-            System.out.println("AskTrump HTTP on port " + httpPort + " — " + INSTANCE_HEX);
+            executor = connectionPool();
+            SocketAddress self = null;
+            ServerSocketChannel unix = null;
+            if (unixPath != null) {
+                if (Files.exists(unixPath, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!isStaleSocket(unixPath)) {
+                        System.err.println("Refusing to replace " + unixPath + ": not a socket, or a server is listening on it");
+                        System.exit(1);
+                    }
+                    Files.delete(unixPath);
+                }
+                UnixDomainSocketAddress address = UnixDomainSocketAddress.of(unixPath);
+                unix = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                unix.bind(address);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try { Files.deleteIfExists(unixPath); } catch (IOException ignored) { }
+                }, "trumpsim-unix-cleanup"));
+                self = address;
+            }
+            if (httpPort >= 0) {
+                serverChannel = ServerSocketChannel.open();
+                serverChannel.bind(new InetSocketAddress(httpPort));
+                self = new InetSocketAddress(InetAddress.getLoopbackAddress(), httpPort);
+            }
+            System.out.println("AskTrump HTTP on " + (httpPort >= 0 ? "port " + httpPort : "")
+                + (httpPort >= 0 && unix != null ? " and " : "") + (unix != null ? "unix:" + unixPath : "")
+                + " — " + INSTANCE_HEX + (shards != null ? " (" + shards.size() + " shards)" : ""));
+            if (startupProbe) StartupProbe.askSelf(self);
+            if (unix != null && serverChannel != null) {
+                ServerSocketChannel listener = unix;
+                Thread t = new Thread(() -> acceptLoop(listener), "trumpsim-unix-accept");
+                t.start();
+                acceptLoop(serverChannel);
+            } else {
+                acceptLoop(unix != null ? unix : serverChannel);
+            }
+        } catch (IOException e) {
+            System.err.println("Server error: " + e.getMessage());
+        }
+    }
+
+    /** True for a socket file nobody accepts on, as left behind by a killed run. */
+    private static boolean isStaleSocket(Path path) {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            if ((mode & 0170000) != 0140000) return false;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Connection threads, capped at {@code -Dtrumpsim.connections} (default {@value #MAX_CONNECTIONS}). They read
+     * and parse requests and wait on the lanes, so the cap also bounds how much parsing runs ahead of the lanes.
+     */
+    private static ThreadPoolExecutor connectionPool() {
+        int max = Math.max(1, Integer.getInteger("trumpsim.connections", MAX_CONNECTIONS));
+        return new ThreadPoolExecutor(0, max, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+    }
+
+    private static final int MAX_CONNECTIONS = 512;
+
+    private void acceptLoop(ServerSocketChannel listener) {
+        try {
             while (true) {
-                Socket client = serverSocket.accept();
-                executor.submit(() -> handleConnection(client));
+                SocketChannel client = listener.accept();
+                long acceptedNanos = System.nanoTime();
+                Flight.ConnectionAccepted accepted = Flight.accepting();
+                try {
+                    executor.execute(() -> handleConnection(client, accepted, acceptedNanos));
+                } catch (RejectedExecutionException e) {
+                    // Every connection thread is busy: turn the peer away now rather than queue it unread.
+                    try { client.write(ByteBuffer.wrap(Lanes.UNAVAILABLE)); } catch (IOException ignored) { }
+                    try { client.close(); } catch (IOException ignored) { }
+                }
             }
         } catch (IOException e) {
             System.err.println("Server error: " + e.getMessage());
         }
     }
 
-    private void handleConnection(Socket client) {
+    private void handleConnection(SocketChannel client, Flight.ConnectionAccepted accepted, long acceptedNanos) {
+        Flight.accepted(accepted, client);
+        ByteBuffer buf = BufferPool.acquire(BufferPool.REQUEST_BUFFER);
         try {
-            InputStream in = client.getInputStream();
-            OutputStream out = client.getOutputStream();
-            RequestContext ctx = parseRequest(in);
-            byte[] body = dispatch(ctx);
-            sendResponse(out, ctx, body);
+            Flight.RequestParsed parsed = Flight.parsing();
+            String peer = peerOf(client);
+            boolean local = isLocal(client);
+            int head = RequestReader.readHead(client, buf, acceptedNanos);
+            if (head == RequestReader.H2_PREFACE) {
+                InputStream in = RequestReader.remainder(client, buf, Http2Connection.PREFACE.length);
+                BufferPool.release(buf);
+                buf = null;
+                new Http2Connection(this, peer, local, in, ChannelStreams.output(client)).serve(null);
+                return;
+            }
+            if (head == RequestReader.TOO_LARGE) {
+                sendResponse(client, buf, HEAD_TOO_LARGE);
+                return;
+            }
+            if (head == RequestReader.TIMED_OUT) {
+                sendResponse(client, buf, REQUEST_TIMEOUT);
+                return;
+            }
+            if (head == RequestReader.EOF) {
+                // Send 400 for a head cut off mid-way; if nothing arrived, the client just closed an idle connection.
+                if (buf.position() > 0) sendResponse(client, buf, BAD_REQUEST);
+                return;
+            }
+            RequestContext ctx = RequestReader.parse(client, buf, head, peer, local, acceptedNanos);
+            Flight.parsed(parsed, ctx, head);
+            if (Http2Connection.isUpgrade(ctx)) {
+                InputStream in = RequestReader.remainder(client, buf, head);
+                BufferPool.release(buf);
+                buf = null;
+                OutputStream out = ChannelStreams.output(client);
+                out.write(Http2Connection.SWITCHING_PROTOCOLS);
+                out.flush();
+                new Http2Connection(this, peer, local, in, out).serve(ctx);
+                return;
+            }
+            byte[] body = handle(ctx);
+            Flight.ResponseWritten written = Flight.writing();
+            sendResponse(client, buf, body);
+            Flight.written(written, ctx, body, "HTTP/1.1");
+            if (startupProbe && RouteMatcher.isAsk(ctx.path)) StartupProbe.report();
+        } catch (RequestReader.Rejected e) {
+            try { sendResponse(client, buf, e.response); } catch (IOException ignored) { }
         } catch (Exception e) {
             // ignore
         } finally {
+            BufferPool.release(buf);
+            if (BufferPool.LEAK_DETECTION) BufferPool.checkLeaks();
             try { client.close(); } catch (IOException ignored) { }
         }
     }
 
-    private RequestContext parseRequest(InputStream in) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
-        String line = reader.readLine();
-        if (line == null) return new RequestContext("GET", "/", "", null);
-        String[] parts = line.split("\\s+", 3);
-        String method = parts.length > 0 ? parts[0] : "GET";
-        String path = parts.length > 1 ? parts[1] : "/";
-        path = path.split("\\?")[0];
-        String query = "";
-        if (line.contains("?")) {
-            int q = line.indexOf('?');
-            int sp = line.indexOf(' ', q);
-            query = sp > 0 ? line.substring(q + 1, sp) : line.substring(q + 1);
-        }
-        Map<String, String> headers = new HashMap<>();
-        while (true) {
-            line = reader.readLine();
-            if (line == null || line.isEmpty()) break;
-            int colon = line.indexOf(':');
-            if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
-        }
-        String body = null;
-        if ("POST".equalsIgnoreCase(method)) {
-            StringBuilder sb = new StringBuilder();
-            char[] buf = new char[4096];
-            int n;
-            while (reader.ready() && (n = reader.read(buf)) != -1) sb.append(buf, 0, n);
-            body = sb.toString().trim();
-        }
-        return new RequestContext(method, path, query, body);
+    private static final AtomicLong UNIX_CONNECTIONS = new AtomicLong();
+
+    /**
+     * The default session key: the peer's IP, or on a Unix domain socket (where every peer is unnamed) a fresh
+     * {@code unix-<n>} per connection, so sessions without X-Session-Id still spread across shards.
+     */
+    private static String peerOf(SocketChannel ch) throws IOException {
+        SocketAddress remote = ch.getRemoteAddress();
+        if (remote instanceof InetSocketAddress) return ((InetSocketAddress) remote).getAddress().getHostAddress();
+        return "unix-" + UNIX_CONNECTIONS.incrementAndGet();
+    }
+
+    /** Loopback and Unix domain socket peers; only these reach {@link #isAdmin admin routes} without {@code --public-admin}. */
+    private static boolean isLocal(SocketChannel ch) throws IOException {
+        SocketAddress remote = ch.getRemoteAddress();
+        return !(remote instanceof InetSocketAddress) || ((InetSocketAddress) remote).getAddress().isLoopbackAddress();
+    }
+
+    /** Routes that expose traffic data: heavy-hitter hashes and counts, lane and shard load. */
+    private static boolean isAdmin(String path) {
+        return path.startsWith("/admin/") || "/shards".equals(path);
+    }
+
+    /**
+     * Runs the request in its priority lane (see {@link Lanes}); in sharded mode /ask goes straight to the shard
+     * owning the session instead, whose loop stands in for the ask lane and keeps its deadline.
+     */
+    private byte[] handle(RequestContext ctx) throws Exception {
+        if (capture != null) capture.record(ctx);
+        if (shards != null && RouteMatcher.isAsk(ctx.path)) return shards.route(ctx.session).run(ctx, this, lanes.ask.deadlineNanos);
+        return lanes.run(ctx, () -> dispatch(ctx, engine));
+    }
+
+    /** The heavy-hitter view: the shared tracker, merged with each shard's own in sharded mode. */
+    private HeavyHitters hot() {
+        if (shards == null) return HeavyHitters.TRACKER;
+        List<HeavyHitters> parts = shards.trackers();
+        parts.add(HeavyHitters.TRACKER);
+        return HeavyHitters.merge(parts);
     }
 
-    private byte[] dispatch(RequestContext ctx) {
+    private byte[] dispatch(RequestContext ctx, TrumpSimEngine engine) {
         applyResponseDelay();
         if (!allowRequest(ctx)) {
             return "HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
@@ -137,46 +327,87 @@ public final class TrumpSim {
         }
         String path = ctx.path;
         if ("/".equals(path) || path.startsWith("/index")) {
-            return getAskTrumpPage();
+            return Pages.HTML;
         }
         if (path.startsWith(API_PREFIX)) {
-            String q = ctx.query;
-            if (ctx.body != null && ctx.body.contains("q=")) {
-                for (String pair : ctx.body.split("&")) {
-                    if (pair.startsWith("q=")) {
-                        try { q = URLDecoder.decode(pair.substring(2), StandardCharsets.UTF_8.name()); } catch (Exception e) { }
-                        break;
-                    }
-                }
-            }
-            if (q == null) q = "";
-            for (String pair : (ctx.query.isEmpty() ? "" : ctx.query).split("&")) {
-                if (pair.startsWith("q=")) {
-                    try { q = URLDecoder.decode(pair.substring(2), StandardCharsets.UTF_8.name()); } catch (Exception e) { }
-                    break;
-                }
-            }
-            String response = engine.respond(q);
-            return jsonResponse(response);
+            boolean explain = FormScanner.flag(ctx.query, "explain");
+            FormScanner form = FormScanner.get();
+            if (!form.decode(ctx.query, "q") && !form.decode(ctx.body, "q")) form.decodeAll(ctx.query);
+            Reply reply = engine.reply(form.buf, 0, form.len);
+            return explain ? explainResponse(reply) : jsonResponse(reply.text);
         }
         if (path.startsWith(ASSET_PREFIX)) {
             String name = path.substring(ASSET_PREFIX.length()).split("/")[0];
-            if ("style".equals(name)) return getAskTrumpCss().getBytes(StandardCharsets.UTF_8);
-            if ("script".equals(name)) return getAskTrumpScript().getBytes(StandardCharsets.UTF_8);
+            if ("style".equals(name)) return Pages.CSS;
+            if ("script".equals(name)) return Pages.SCRIPT;
         }
+        if (isAdmin(path) && !ctx.local && !publicAdmin) return NOT_FOUND;
         if ("/health".equals(path)) return healthResponse();
         if ("/version".equals(path)) return versionResponse();
-        return "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+        if ("/shards".equals(path) && shards != null) return shards.statsJson().getBytes(StandardCharsets.UTF_8);
+        if ("/admin/hot".equals(path)) return hotResponse(ctx);
+        if ("/admin/lanes".equals(path)) return lanes.statsJson().getBytes(StandardCharsets.UTF_8);
+        return NOT_FOUND;
+    }
+
+    private static final byte[] NOT_FOUND = "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEAD_TOO_LARGE = ("HTTP/1.1 431 Request Header Fields Too Large\r\n"
+        + "Content-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BAD_REQUEST =
+        "HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REQUEST_TIMEOUT =
+        "HTTP/1.1 408 Request Timeout\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BODY_TOO_LARGE =
+        "HTTP/1.1 413 Content Too Large\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Writes the status line, headers and body through the (already drained) request buffer. Bodies that are
+     * themselves a raw HTTP/1.1 response, such as dispatch()'s 400/404, are written as they are.
+     */
+    private void sendResponse(SocketChannel out, ByteBuffer buf, byte[] body) throws IOException {
+        buf.clear();
+        if (!RequestReader.startsWith(body, "HTTP/1.1 ")) {
+            RequestReader.putAscii(buf, "HTTP/1.1 200 OK\r\nContent-Type: ");
+            RequestReader.putAscii(buf, contentTypeOf(body));
+            RequestReader.putAscii(buf, "\r\nContent-Length: ");
+            RequestReader.putInt(buf, body.length);
+            RequestReader.putAscii(buf, "\r\nConnection: close\r\n\r\n");
+        }
+        int off = 0;
+        while (true) {
+            int n = Math.min(buf.remaining(), body.length - off);
+            buf.put(body, off, n);
+            off += n;
+            buf.flip();
+            while (buf.hasRemaining()) out.write(buf);
+            if (off == body.length) return;
+            buf.clear();
+        }
+    }
+
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String HTML_TYPE = "text/html; charset=utf-8";
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+
+    private static String contentTypeOf(byte[] body) {
+        if (body.length > 2 && body[0] == '{') return JSON_TYPE;
+        if (body.length > 5 && containsIgnoreCase(body, Math.min(100, body.length), "<!doctype")) return HTML_TYPE;
+        return TEXT_TYPE;
     }
 
-    private void sendResponse(OutputStream out, RequestContext ctx, byte[] body) throws IOException {
-        boolean isJson = body.length > 2 && body[0] == '{';
-        boolean isHtml = body.length > 5 && new String(body, 0, Math.min(100, body.length), StandardCharsets.UTF_8).toLowerCase().contains("<!doctype");
-        String contentType = isJson ? "application/json" : (isHtml ? "text/html" : "text/plain");
-        String header = "HTTP/1.1 200 OK\r\nContent-Type: " + contentType + "; charset=utf-8\r\nContent-Length: " + body.length + "\r\nConnection: close\r\n\r\n";
-        out.write(header.getBytes(StandardCharsets.UTF_8));
-        out.write(body);
-        out.flush();
+    /** ASCII case-insensitive search in {@code b[0..len)}; the needle must be lower case. */
+    private static boolean containsIgnoreCase(byte[] b, int len, String needle) {
+        outer:
+        for (int i = 0; i + needle.length() <= len; i++) {
+            for (int k = 0; k < needle.length(); k++) {
+                int c = b[i + k];
+                if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+                if (c != needle.charAt(k)) continue outer;
+            }
+            return true;
+        }
+        return false;
     }
 
     private byte[] jsonResponse(String text) {
@@ -184,6 +415,34 @@ public final class TrumpSim {
         return ("{\"reply\":\"" + escaped + "\",\"build\":\"" + BUILD_SALT + "\"}").getBytes(StandardCharsets.UTF_8);
     }
 
+    /** {@link #jsonResponse} plus the per-category scores behind the reply. */
+    private byte[] explainResponse(Reply reply) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"reply\":\"").append(ReplyFormatter.escapeForJson(reply.text))
+            .append("\",\"category\":\"").append(reply.hint.name()).append("\",");
+        ScoringModel.explain(sb, reply.scores);
+        sb.append(",\"build\":\"").append(BUILD_SALT).append("\"}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Heavy-hitter report; with {@code ?q=} also the estimated count of that input. */
+    private byte[] hotResponse(RequestContext ctx) {
+        HeavyHitters hot = hot();
+        StringBuilder sb = new StringBuilder(2048);
+        FormScanner form = FormScanner.get();
+        if (form.decode(ctx.query, "q")) {
+            InputBuffer in = TrumpSimEngine.SCRATCH.get().load(form.buf, 0, form.len);
+            long fp = HeavyHitters.fingerprint(in.chars, in.len);
+            sb.append("{\"query\":{\"hash\":\"").append(HeavyHitters.hex(fp)).append("\",\"estimate\":")
+                .append(hot.estimate(fp)).append("},");
+        } else {
+            sb.append('{');
+        }
+        hot.appendJson(sb);
+        sb.append('}');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
     private byte[] healthResponse() {
         String json = "{\"status\":\"ok\",\"instance\":\"" + INSTANCE_HEX + "\"}";
         return json.getBytes(StandardCharsets.UTF_8);
@@ -195,8 +454,14 @@ public final class TrumpSim {
     }
 
     private byte[] getAskTrumpPage() {
-        String html = getAskTrumpHtml();
-        return html.getBytes(StandardCharsets.UTF_8);
+        return Pages.HTML;
+    }
+
+    /** Encoded page and assets, built once on the first page load instead of per request or at boot. */
+    private static final class Pages {
+        static final byte[] HTML = utf8(getAskTrumpHtml());
+        static final byte[] CSS = utf8(getAskTrumpCss());
+        static final byte[] SCRIPT = utf8(getAskTrumpScript());
     }
 
     // --- Inline AskTrump HTML ---
@@ -246,555 +511,3214 @@ public final class TrumpSim {
             "footer{text-align:center;margin-top:2rem;color:#6a5a7a;font-size:0.85rem}\n";
     }
 
-    private static String getAskTrumpScript() {
-        return "(function(){var q=document.getElementById('q');var go=document.getElementById('go');var reply=document.getElementById('reply');\n" +
-            "function ask(){var t=(q.value||'').trim();if(!t){reply.textContent='Type a question first.';return;}\n" +
-            "reply.textContent='Thinking...';reply.classList.add('loading');\n" +
-            "fetch('/ask?q='+encodeURIComponent(t)).then(function(r){return r.json();}).then(function(d){reply.textContent=d.reply||'';reply.classList.remove('loading');})\n" +
-            ".catch(function(){reply.textContent='Network error. Try again.';reply.classList.remove('loading');});}\n" +
-            "go.addEventListener('click',ask);q.addEventListener('keydown',function(e){if(e.key==='Enter'&&!e.shiftKey){e.preventDefault();ask();}});})();\n";
-    }
+    private static String getAskTrumpScript() {
+        return "(function(){var q=document.getElementById('q');var go=document.getElementById('go');var reply=document.getElementById('reply');\n" +
+            "function ask(){var t=(q.value||'').trim();if(!t){reply.textContent='Type a question first.';return;}\n" +
+            "reply.textContent='Thinking...';reply.classList.add('loading');\n" +
+            "fetch('/ask?q='+encodeURIComponent(t)).then(function(r){return r.json();}).then(function(d){reply.textContent=d.reply||'';reply.classList.remove('loading');})\n" +
+            ".catch(function(){reply.textContent='Network error. Try again.';reply.classList.remove('loading');});}\n" +
+            "go.addEventListener('click',ask);q.addEventListener('keydown',function(e){if(e.key==='Enter'&&!e.shiftKey){e.preventDefault();ask();}});})();\n";
+    }
+
+    // --- Request context ---
+
+    /**
+     * HTTP/1.x request reader over a pooled buffer: finds the end of the head, parses the request line and the
+     * few headers the server uses without a reader, line strings or a header map, and reads a Content-Length body.
+     */
+    private static final class RequestReader {
+        static final int TIMED_OUT = -4;
+        static final int H2_PREFACE = -3;
+        static final int TOO_LARGE = -2;
+        static final int EOF = -1;
+        private static final int MAX_BODY = 64 * 1024;
+        /** How long the head may take, counted from accept, so an idle or trickling peer cannot hold a connection thread. */
+        private static final long HEAD_TIMEOUT_MILLIS = 10_000;
+        /** How long the rest of a declared body may take once the head is in. */
+        private static final long BODY_TIMEOUT_MILLIS = 5_000;
+        private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[MAX_BODY]);
+
+        /**
+         * Reads until the blank line ending the head and returns the offset just past it, with the buffer
+         * left in write mode; or {@link #H2_PREFACE}, {@link #EOF}, {@link #TOO_LARGE}, or {@link #TIMED_OUT}
+         * once {@link #HEAD_TIMEOUT_MILLIS} have passed since {@code acceptedNanos}.
+         */
+        static int readHead(SocketChannel ch, ByteBuffer buf, long acceptedNanos) throws IOException {
+            long deadline = acceptedNanos + TimeUnit.MILLISECONDS.toNanos(HEAD_TIMEOUT_MILLIS);
+            int scanned = 0;
+            Selector selector = null;
+            ch.configureBlocking(false);
+            try {
+                while (true) {
+                    int filled = buf.position();
+                    if (isPrefacePrefix(buf, filled)) {
+                        if (filled >= Http2Connection.PREFACE.length) return H2_PREFACE;
+                    } else {
+                        for (int i = Math.max(3, scanned); i < filled; i++) {
+                            if (buf.get(i) == '\n' && buf.get(i - 1) == '\r' && buf.get(i - 2) == '\n' && buf.get(i - 3) == '\r') return i + 1;
+                        }
+                        scanned = filled;
+                    }
+                    if (!buf.hasRemaining()) return TOO_LARGE;
+                    int n = ch.read(buf);
+                    if (n < 0) return EOF;
+                    if (n == 0) {
+                        long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (left <= 0) return TIMED_OUT;
+                        if (selector == null) {
+                            selector = Selector.open();
+                            ch.register(selector, SelectionKey.OP_READ);
+                        }
+                        selector.select(left);
+                        selector.selectedKeys().clear();
+                    }
+                }
+            } finally {
+                if (selector != null) selector.close();
+                ch.configureBlocking(true);
+            }
+        }
+
+        private static boolean isPrefacePrefix(ByteBuffer buf, int filled) {
+            int n = Math.min(filled, Http2Connection.PREFACE.length);
+            if (n == 0) return false;
+            for (int i = 0; i < n; i++) if (buf.get(i) != Http2Connection.PREFACE[i]) return false;
+            return true;
+        }
+
+        /**
+         * Parses the head in {@code buf[0..head)}, then reads any POST body. Bytes the peer sent past the request
+         * (an h2 preface after {@code Upgrade}) are left in {@code buf[head..position)} for {@link #remainder}.
+         */
+        static RequestContext parse(SocketChannel ch, ByteBuffer buf, int head, String peer, boolean local, long arrivalNanos)
+                throws IOException {
+            int eol = indexOf(buf, 0, head, '\r');
+            int sp1 = indexOf(buf, 0, eol, ' ');
+            if (sp1 < 0) sp1 = eol;
+            int sp2 = indexOf(buf, sp1 + 1, eol, ' ');
+            if (sp2 < 0) sp2 = eol;
+            String method = method(buf, sp1);
+            int targetStart = Math.min(sp1 + 1, sp2);
+            int q = indexOf(buf, targetStart, sp2, '?');
+            String path = targetStart == sp2 ? "/" : string(buf, targetStart, q < 0 ? sp2 : q);
+            String query = q < 0 ? "" : string(buf, q + 1, sp2);
+            Map<String, String> headers = Collections.emptyMap();
+            long contentLength = -1;
+            int line = eol + 2;
+            while (line < head - 2) {
+                int end = indexOf(buf, line, head, '\r');
+                int colon = indexOf(buf, line, end, ':');
+                if (colon > line) {
+                    int v = colon + 1;
+                    int ve = end;
+                    while (v < ve && buf.get(v) <= ' ') v++;
+                    while (ve > v && buf.get(ve - 1) <= ' ') ve--;
+                    if (nameIs(buf, line, colon, "content-length")) {
+                        contentLength = digits(buf, v, ve);
+                    } else if (nameIs(buf, line, colon, "x-session-id") || nameIs(buf, line, colon, "upgrade")
+                            || nameIs(buf, line, colon, "http2-settings")) {
+                        if (headers.isEmpty()) headers = new HashMap<>(4);
+                        headers.put(string(buf, line, colon).toLowerCase(Locale.ROOT), string(buf, v, ve));
+                    }
+                }
+                line = end + 2;
+            }
+            String body = null;
+            if ("POST".equalsIgnoreCase(method)) body = body(ch, buf, head, contentLength);
+            String session = headers.get("x-session-id");
+            if (session == null) session = peer;
+            return new RequestContext(method, path, query, body, session, headers, arrivalNanos, local);
+        }
+
+        /**
+         * Content-Length bytes; without one, whatever already arrived. Refuses with 413 past {@link #MAX_BODY},
+         * 400 if the peer closes early and 408 if the body is still short after {@link #BODY_TIMEOUT_MILLIS}.
+         */
+        private static String body(SocketChannel ch, ByteBuffer buf, int head, long contentLength) throws IOException {
+            if (contentLength > MAX_BODY) throw new Rejected(BODY_TOO_LARGE);
+            byte[] scratch = SCRATCH.get();
+            int filled = buf.position();
+            int want = (int) Math.min(MAX_BODY, contentLength < 0 ? filled - head : contentLength);
+            int have = Math.min(want, filled - head);
+            buf.get(head, scratch, 0, have);
+            if (have == want) {
+                // Whole body already buffered: slide anything after it down to head.
+                for (int i = head + want; i < filled; i++) buf.put(i - want, buf.get(i));
+                buf.position(filled - want);
+                return new String(scratch, 0, have, StandardCharsets.UTF_8).trim();
+            }
+            // The channel is blocking and has no timeout of its own, so wait on a selector for the rest.
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BODY_TIMEOUT_MILLIS);
+            ch.configureBlocking(false);
+            try (Selector selector = Selector.open()) {
+                ch.register(selector, SelectionKey.OP_READ);
+                while (have < want) {
+                    buf.clear();
+                    buf.limit(Math.min(buf.capacity(), want - have));
+                    int n = ch.read(buf);
+                    if (n < 0) throw new Rejected(BAD_REQUEST);
+                    if (n == 0) {
+                        long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (left <= 0) throw new Rejected(REQUEST_TIMEOUT);
+                        selector.select(left);
+                        selector.selectedKeys().clear();
+                        continue;
+                    }
+                    buf.flip();
+                    buf.get(scratch, have, n);
+                    have += n;
+                }
+            } finally {
+                ch.configureBlocking(true);
+            }
+            buf.clear();
+            buf.position(head);
+            return new String(scratch, 0, have, StandardCharsets.UTF_8).trim();
+        }
+
+        /** A request refused while it was being read; {@link #response} goes back before the connection closes. */
+        static final class Rejected extends IOException {
+            private static final long serialVersionUID = 1L;
+            final byte[] response;
+
+            Rejected(byte[] response) {
+                super(new String(response, 0, 12, StandardCharsets.US_ASCII));
+                this.response = response;
+            }
+        }
+
+        /** Bytes the peer sent past {@code from}, followed by the rest of the channel. */
+        static InputStream remainder(SocketChannel ch, ByteBuffer buf, int from) {
+            byte[] rest = new byte[Math.max(0, buf.position() - from)];
+            buf.get(from, rest);
+            return new SequenceInputStream(new ByteArrayInputStream(rest), ChannelStreams.input(ch));
+        }
+
+        /** Interned for the common spellings; anything else verbatim, since callers compare ignoring case. */
+        private static String method(ByteBuffer buf, int end) {
+            if (end == 3 && buf.get(0) == 'G' && buf.get(1) == 'E' && buf.get(2) == 'T') return "GET";
+            if (end == 4 && buf.get(0) == 'P' && buf.get(1) == 'O' && buf.get(2) == 'S' && buf.get(3) == 'T') return "POST";
+            if (end == 4 && buf.get(0) == 'H' && buf.get(1) == 'E' && buf.get(2) == 'A' && buf.get(3) == 'D') return "HEAD";
+            return end == 0 ? "GET" : string(buf, 0, end);
+        }
+
+        private static String string(ByteBuffer buf, int from, int to) {
+            byte[] scratch = SCRATCH.get();
+            buf.get(from, scratch, 0, to - from);
+            return new String(scratch, 0, to - from, StandardCharsets.UTF_8);
+        }
+
+        private static boolean nameIs(ByteBuffer buf, int from, int to, String lower) {
+            while (to > from && buf.get(to - 1) == ' ') to--;
+            if (to - from != lower.length()) return false;
+            for (int i = 0; i < lower.length(); i++) {
+                int c = buf.get(from + i);
+                if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+                if (c != lower.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private static long digits(ByteBuffer buf, int from, int to) {
+            long n = 0;
+            for (int i = from; i < to; i++) {
+                int c = buf.get(i);
+                if (c < '0' || c > '9' || n > Integer.MAX_VALUE) return -1;
+                n = n * 10 + (c - '0');
+            }
+            return from == to ? -1 : n;
+        }
+
+        private static int indexOf(ByteBuffer buf, int from, int to, char c) {
+            for (int i = from; i < to; i++) if (buf.get(i) == c) return i;
+            return -1;
+        }
+
+        static boolean startsWith(byte[] b, String prefix) {
+            if (b.length < prefix.length()) return false;
+            for (int i = 0; i < prefix.length(); i++) if (b[i] != prefix.charAt(i)) return false;
+            return true;
+        }
+
+        static void putAscii(ByteBuffer buf, String s) {
+            for (int i = 0; i < s.length(); i++) buf.put((byte) s.charAt(i));
+        }
+
+        static void putInt(ByteBuffer buf, int v) {
+            if (v >= 10) putInt(buf, v / 10);
+            buf.put((byte) ('0' + v % 10));
+        }
+    }
+
+    /**
+     * Blocking streams over a SocketChannel of either family (Unix domain channels have no socket adaptor).
+     * Channels.newInputStream/newOutputStream would do, except both hold the channel's blocking lock for the
+     * whole call, so an HTTP/2 reader parked in read() would stall every writer; the channel itself only
+     * serializes reads against reads and writes against writes.
+     */
+    private static final class ChannelStreams {
+        static InputStream input(SocketChannel ch) {
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0) return 0;
+                    return ch.read(ByteBuffer.wrap(b, off, len));
+                }
+            };
+        }
+
+        static OutputStream output(SocketChannel ch) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+                    while (buf.hasRemaining()) ch.write(buf);
+                }
+            };
+        }
+    }
+
+    /**
+     * Direct-buffer pool shared by request parsing and response writing. Buffers come in {@link #SIZE_CLASSES};
+     * total pooled capacity is capped at {@link #MAX_POOLED_BYTES}, past which {@link #acquire} hands out plain
+     * heap buffers that are dropped on release. With {@code -Dtrumpsim.leakDetection=true} every acquire records
+     * its call site and {@link #checkLeaks} reports what the current thread still holds.
+     */
+    private static final class BufferPool {
+        static final int REQUEST_BUFFER = 16 * 1024;
+        static final int[] SIZE_CLASSES = { 4 * 1024, 16 * 1024, 64 * 1024 };
+        static final long MAX_POOLED_BYTES = 32L * 1024 * 1024;
+        static final boolean LEAK_DETECTION = Boolean.getBoolean("trumpsim.leakDetection");
+        private static final List<Queue<ByteBuffer>> FREE = new ArrayList<>();
+        private static final AtomicLong POOLED = new AtomicLong();
+        private static final Map<ByteBuffer, Acquisition> OUTSTANDING =
+            LEAK_DETECTION ? Collections.synchronizedMap(new IdentityHashMap<>()) : null;
+
+        static {
+            for (int i = 0; i < SIZE_CLASSES.length; i++) FREE.add(new ConcurrentLinkedQueue<>());
+        }
+
+        private static final class Acquisition extends Throwable {
+            private static final long serialVersionUID = 1L;
+            final transient Thread owner = Thread.currentThread();
+
+            Acquisition() {
+                super("buffer acquired here and never released");
+            }
+        }
+
+        static ByteBuffer acquire(int minCapacity) {
+            int c = sizeClass(minCapacity);
+            ByteBuffer buf = null;
+            if (c >= 0) {
+                buf = FREE.get(c).poll();
+                if (buf == null && reserve(SIZE_CLASSES[c])) buf = ByteBuffer.allocateDirect(SIZE_CLASSES[c]);
+            }
+            if (buf == null) buf = ByteBuffer.allocate(c >= 0 ? SIZE_CLASSES[c] : minCapacity);
+            buf.clear();
+            if (LEAK_DETECTION) OUTSTANDING.put(buf, new Acquisition());
+            return buf;
+        }
+
+        /** Returns {@code buf} to its size class; null is ignored so callers can release in finally blocks. */
+        static void release(ByteBuffer buf) {
+            if (buf == null) return;
+            if (LEAK_DETECTION && OUTSTANDING.remove(buf) == null) {
+                throw new IllegalStateException("buffer released twice or not from the pool");
+            }
+            if (!buf.isDirect()) return;
+            buf.clear();
+            FREE.get(sizeClass(buf.capacity())).offer(buf);
+        }
+
+        /** Prints and counts buffers acquired by the current thread that are still outstanding. */
+        static int checkLeaks() {
+            if (!LEAK_DETECTION) return 0;
+            int leaks = 0;
+            synchronized (OUTSTANDING) {
+                Iterator<Acquisition> it = OUTSTANDING.values().iterator();
+                while (it.hasNext()) {
+                    Acquisition a = it.next();
+                    if (a.owner != Thread.currentThread()) continue;
+                    a.printStackTrace();
+                    it.remove();
+                    leaks++;
+                }
+            }
+            return leaks;
+        }
+
+        static long pooledBytes() {
+            return POOLED.get();
+        }
+
+        private static boolean reserve(int bytes) {
+            while (true) {
+                long cur = POOLED.get();
+                if (cur + bytes > MAX_POOLED_BYTES) return false;
+                if (POOLED.compareAndSet(cur, cur + bytes)) return true;
+            }
+        }
+
+        private static int sizeClass(int capacity) {
+            for (int i = 0; i < SIZE_CLASSES.length; i++) if (capacity <= SIZE_CLASSES[i]) return i;
+            return -1;
+        }
+    }
+    private static final class RequestContext {
+        final String method;
+        final String path;
+        final String query;
+        final String body;
+        /** Routing key for sharded mode: X-Session-Id header, else {@link #peerOf the peer}. */
+        final String session;
+        /** Lower-cased header names. */
+        final Map<String, String> headers;
+        /** System.nanoTime() when the request started to arrive: its connection's accept, or its h2 HEADERS. */
+        final long arrivalNanos;
+        /** From a loopback or Unix socket peer, or made in-process (replay). */
+        final boolean local;
+
+        RequestContext(String method, String path, String query, String body, String session, Map<String, String> headers) {
+            this(method, path, query, body, session, headers, System.nanoTime(), true);
+        }
+
+        RequestContext(String method, String path, String query, String body, String session, Map<String, String> headers,
+                long arrivalNanos, boolean local) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.body = body;
+            this.session = session;
+            this.headers = headers;
+            this.arrivalNanos = arrivalNanos;
+            this.local = local;
+        }
+    }
+
+    /**
+     * Opt-in request capture ({@code --capture FILE}). Requests are queued by the serving threads and encoded
+     * by one daemon writer into an append-only file:
+     * <pre>
+     *   file    = "TSCAP" version(1) segment*
+     *   segment = 'S' epochMillis(8) record*          one per server run
+     *   record  = 'R' arrivalDelta method path query body
+     * </pre>
+     * {@code arrivalDelta} is the zig-zag varint nanosecond gap to the previous record (negative when threads
+     * enqueue out of order); {@code method} is a code byte (0 GET, 1 POST, 2 HEAD, 3 followed by a string);
+     * strings are varint length + UTF-8; {@code body} is varint (length + 1), 0 meaning no body. Session
+     * keys and headers are not recorded. If the writer falls behind, requests are dropped and counted.
+     */
+    private static final class TrafficCapture {
+        static final byte[] MAGIC = { 'T', 'S', 'C', 'A', 'P' };
+        static final int VERSION = 1;
+        static final int SEGMENT = 'S';
+        static final int RECORD = 'R';
+        static final String[] METHODS = { "GET", "POST", "HEAD" };
+        private static final int QUEUE_CAPACITY = 8192;
+
+        private final BlockingQueue<RequestContext> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final DataOutputStream out;
+        private final AtomicLong dropped = new AtomicLong();
+        private long lastArrival;
+        private boolean closed; // guarded by this
+
+        private TrafficCapture(DataOutputStream out) {
+            this.out = out;
+        }
+
+        /** Starts a segment at the end of {@code path}; an existing file must already be a capture of this version. */
+        static TrafficCapture open(String path) throws IOException {
+            File file = new File(path);
+            boolean fresh = file.length() == 0;
+            if (!fresh) checkHeader(path);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024));
+            if (fresh) {
+                out.write(MAGIC);
+                out.write(VERSION);
+            }
+            out.write(SEGMENT);
+            out.writeLong(System.currentTimeMillis());
+            out.flush();
+            TrafficCapture capture = new TrafficCapture(out);
+            capture.lastArrival = System.nanoTime();
+            Thread writer = new Thread(capture::drain, "trumpsim-capture");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(capture::close, "trumpsim-capture-close"));
+            return capture;
+        }
+
+        /** Refuses anything that {@link #read} would not take, so a run never appends to a foreign file. */
+        private static void checkHeader(String path) throws IOException {
+            try (InputStream in = new FileInputStream(path)) {
+                byte[] head = in.readNBytes(MAGIC.length + 1);
+                if (head.length <= MAGIC.length || !Arrays.equals(head, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+                    throw new IOException(path + " is not a capture file");
+                }
+                if (head[MAGIC.length] != VERSION) {
+                    throw new IOException(path + " is capture version " + head[MAGIC.length] + ", this build writes " + VERSION);
+                }
+            }
+        }
+
+        void record(RequestContext ctx) {
+            if (!queue.offer(ctx)) dropped.incrementAndGet();
+        }
+
+        long dropped() {
+            return dropped.get();
+        }
+
+        /** Writer loop; flushes whenever the queue runs dry so an idle server leaves a complete file. */
+        private void drain() {
+            try {
+                while (true) {
+                    RequestContext ctx = queue.take();
+                    synchronized (this) {
+                        write(ctx);
+                        if (closed || queue.isEmpty()) out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Capture stopped: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** Shutdown hook: writes out whatever is still queued and reports requests the writer had to drop. */
+        private synchronized void close() {
+            closed = true;
+            try {
+                for (RequestContext ctx; (ctx = queue.poll()) != null; ) write(ctx);
+                out.flush();
+            } catch (IOException e) {
+                System.err.println("Capture stopped: " + e.getMessage());
+            }
+            long n = dropped();
+            if (n > 0) System.err.println("Capture dropped " + n + " requests (writer fell behind)");
+        }
+
+        private void write(RequestContext ctx) throws IOException {
+            out.write(RECORD);
+            long delta = ctx.arrivalNanos - lastArrival;
+            lastArrival = ctx.arrivalNanos;
+            writeVarint(out, (delta << 1) ^ (delta >> 63));
+            int code = Arrays.asList(METHODS).indexOf(ctx.method);
+            out.write(code < 0 ? METHODS.length : code);
+            if (code < 0) writeString(out, ctx.method);
+            writeString(out, ctx.path);
+            writeString(out, ctx.query);
+            if (ctx.body == null) {
+                out.write(0);
+            } else {
+                byte[] b = ctx.body.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, b.length + 1L);
+                out.write(b);
+            }
+        }
+
+        private static void writeString(DataOutputStream out, String s) throws IOException {
+            byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, b.length);
+            out.write(b);
+        }
+
+        private static void writeVarint(DataOutputStream out, long v) throws IOException {
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+
+        /** A captured request and its arrival offset from the first request in the file. */
+        static final class Entry {
+            final long offsetNanos;
+            final RequestContext ctx;
+
+            Entry(long offsetNanos, RequestContext ctx) {
+                this.offsetNanos = offsetNanos;
+                this.ctx = ctx;
+            }
+        }
+
+        /**
+         * Reads every record, in arrival order. Segments are laid end to end, so the gap between server runs
+         * is not replayed. A truncated final record (server killed mid-write) is ignored.
+         */
+        static List<Entry> read(String path) throws IOException {
+            List<Entry> entries = new ArrayList<>();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 64 * 1024))) {
+                byte[] magic = new byte[MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC) || in.read() != VERSION) throw new IOException(path + " is not a capture file");
+                long clock = 0;
+                long segmentEnd = 0;
+                while (true) {
+                    int tag = in.read();
+                    if (tag < 0) break;
+                    try {
+                        if (tag == SEGMENT) {
+                            in.readLong();
+                            clock = segmentEnd;
+                        } else if (tag == RECORD) {
+                            long z = readVarint(in);
+                            clock += (z >>> 1) ^ -(z & 1);
+                            int code = in.readUnsignedByte();
+                            String method = code < METHODS.length ? METHODS[code] : readString(in);
+                            String p = readString(in);
+                            String query = readString(in);
+                            long bodyLen = readVarint(in);
+                            String body = null;
+                            if (bodyLen > 0) {
+                                byte[] b = new byte[(int) (bodyLen - 1)];
+                                in.readFully(b);
+                                body = new String(b, StandardCharsets.UTF_8);
+                            }
+                            entries.add(new Entry(clock, new RequestContext(method, p, query, body, "replay", Collections.emptyMap())));
+                            segmentEnd = Math.max(segmentEnd, clock);
+                        } else {
+                            throw new IOException("corrupt capture record tag " + tag);
+                        }
+                    } catch (EOFException e) {
+                        break;
+                    }
+                }
+            }
+            entries.sort(Comparator.comparingLong(e -> e.offsetNanos));
+            long base = entries.isEmpty() ? 0 : entries.get(0).offsetNanos;
+            List<Entry> rebased = new ArrayList<>(entries.size());
+            for (Entry e : entries) rebased.add(new Entry(e.offsetNanos - base, e.ctx));
+            return rebased;
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            byte[] b = new byte[(int) readVarint(in)];
+            in.readFully(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        private static long readVarint(DataInputStream in) throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("malformed varint");
+        }
+    }
+
+    /**
+     * Replays a capture file ({@code --replay FILE}) either in-process through {@link #dispatch} or against a
+     * running server ({@code --target host:port}), at the original pace scaled by {@code --speed} (0 = as fast
+     * as possible). Latency is measured from each request's scheduled send time, so a slow build is not hidden
+     * by the replay falling behind. In-process replay runs on one thread with a bank seeded by {@code --seed},
+     * which makes the response digest reproducible across runs of the same build.
+     */
+    private static final class TrafficReplay {
+        private static final String USAGE = "Usage: --replay FILE [--speed X] [--target host:port [--concurrency N]] [--seed N]";
+
+        static void run(TrumpSim app, String[] args) {
+            String file = null;
+            String target = null;
+            double speed = 1.0;
+            long seed = XenonResponseBank.SEED;
+            int concurrency = 16;
+            for (int i = 0; i + 1 < args.length; i++) {
+                String v = args[i + 1];
+                try {
+                    if ("--replay".equals(args[i])) file = v;
+                    else if ("--target".equals(args[i])) target = v;
+                    else if ("--speed".equals(args[i])) speed = Double.parseDouble(v);
+                    else if ("--seed".equals(args[i])) seed = Long.decode(v);
+                    else if ("--concurrency".equals(args[i])) concurrency = Math.max(1, Integer.parseInt(v));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring " + args[i] + " " + v);
+                }
+            }
+            if (file == null) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            String host = null;
+            int port = -1;
+            if (target != null) {
+                int colon = target.lastIndexOf(':');
+                host = colon > 0 ? target.substring(0, colon) : "127.0.0.1";
+                try {
+                    port = Integer.parseInt(target.substring(colon + 1));
+                } catch (NumberFormatException e) {
+                    port = -1;
+                }
+                if (port < 1 || port > 65535) {
+                    System.err.println("Bad --target " + target + ": the port must be 1-65535");
+                    System.err.println(USAGE);
+                    System.exit(2);
+                }
+            }
+            List<TrafficCapture.Entry> entries;
+            try {
+                entries = TrafficCapture.read(file);
+            } catch (IOException e) {
+                System.err.println("Cannot read " + file + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            long[] latency = new long[entries.size()];
+            long started = System.nanoTime();
+            String digest;
+            int failures;
+            if (target == null) {
+                TrumpSimEngine engine = new TrumpSimEngine(new XenonResponseBank(seed), app.engine.scoring);
+                java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+                for (int i = 0; i < entries.size(); i++) {
+                    long due = pace(started, entries.get(i).offsetNanos, speed);
+                    crc.update(app.dispatch(entries.get(i).ctx, engine));
+                    latency[i] = System.nanoTime() - due;
+                }
+                digest = String.format("%08x", crc.getValue());
+                failures = 0;
+            } else {
+                failures = overSockets(entries, host, port, target, speed, concurrency, started, latency);
+                digest = null;
+            }
+            long elapsed = System.nanoTime() - started;
+            Arrays.sort(latency);
+            System.out.printf("replayed %d requests from %s in %.2f s (%s, speed %s, seed 0x%x)%n", entries.size(), file,
+                elapsed / 1e9, target == null ? "in-process" : target, speed <= 0 ? "max" : speed + "x", seed);
+            System.out.printf("latency us: p50=%d p90=%d p99=%d max=%d%n", percentile(latency, 50), percentile(latency, 90),
+                percentile(latency, 99), latency.length == 0 ? 0 : latency[latency.length - 1] / 1000);
+            if (failures > 0) System.out.println("failed: " + failures);
+            if (digest != null) System.out.println("response digest: " + digest);
+        }
+
+        private static int overSockets(List<TrafficCapture.Entry> entries, String host, int port, String target, double speed,
+                                       int concurrency, long started, long[] latency) {
+            ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+            AtomicLong failures = new AtomicLong();
+            for (int i = 0; i < entries.size(); i++) {
+                int idx = i;
+                RequestContext ctx = entries.get(i).ctx;
+                long due = pace(started, entries.get(i).offsetNanos, speed);
+                pool.execute(() -> {
+                    try (Socket s = new Socket(host, port)) {
+                        s.getOutputStream().write(requestBytes(ctx, target));
+                        s.getOutputStream().flush();
+                        s.getInputStream().readAllBytes();
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                    latency[idx] = System.nanoTime() - due;
+                });
+            }
+            pool.shutdown();
+            try {
+                pool.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return (int) failures.get();
+        }
+
+        /** Sleeps until the scaled offset and returns that instant. */
+        private static long pace(long started, long offsetNanos, double speed) {
+            if (speed <= 0) return System.nanoTime();
+            long due = started + (long) (offsetNanos / speed);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return due;
+        }
+
+        private static byte[] requestBytes(RequestContext ctx, String host) {
+            StringBuilder sb = new StringBuilder(128);
+            sb.append(ctx.method).append(' ').append(ctx.path);
+            if (!ctx.query.isEmpty()) sb.append('?').append(ctx.query);
+            sb.append(" HTTP/1.1\r\nHost: ").append(host).append("\r\nConnection: close\r\n");
+            byte[] body = ctx.body == null ? null : ctx.body.getBytes(StandardCharsets.UTF_8);
+            if (body != null) {
+                sb.append("Content-Type: application/x-www-form-urlencoded\r\nContent-Length: ").append(body.length).append("\r\n");
+            }
+            sb.append("\r\n");
+            byte[] head = sb.toString().getBytes(StandardCharsets.UTF_8);
+            if (body == null) return head;
+            byte[] all = Arrays.copyOf(head, head.length + body.length);
+            System.arraycopy(body, 0, all, head.length, body.length);
+            return all;
+        }
+
+        private static long percentile(long[] sorted, int p) {
+            if (sorted.length == 0) return 0;
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100.0 * sorted.length) - 1)] / 1000;
+        }
+    }
+
+    /**
+     * Priority lanes by {@link RouteMatcher} class, so /ask load cannot starve health probes or page loads.
+     * Each lane has its own threads, a bounded queue and a deadline counted from the request's arrival (the
+     * connection's accept, so slow uploads and parsing count too): a request that is still queued past it gets
+     * a 503 instead of a late answer, and one that finds the queue full gets a 503 straight away. In sharded mode
+     * /ask bypasses its lane for the shard loop, which applies the ask lane's deadline itself (see {@link Shard#run}).
+     * Limits come from {@code -Dtrumpsim.lane.<name>=threads,queue,deadlineMillis}.
+     */
+    private static final class Lanes {
+        static final byte[] UNAVAILABLE =
+            "HTTP/1.1 503 Service Unavailable\r\nRetry-After: 1\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        /** Health, version and admin routes, and anything unmatched (cheap 404s). */
+        final Lane control = Lane.configure("control", 2, 64, 5_000);
+        /** The page and its assets. */
+        final Lane assets = Lane.configure("assets", 4, 128, 5_000);
+        final Lane ask = Lane.configure("ask", 2 * Runtime.getRuntime().availableProcessors(), 256, 2_000);
+
+        Lane laneFor(String path) {
+            if (RouteMatcher.isAsk(path)) return ask;
+            if (RouteMatcher.isRoot(path) || RouteMatcher.isAsset(path)) return assets;
+            return control;
+        }
+
+        /** Runs {@code work} on the request's lane and waits for it; 503 if the lane is full or the deadline passed. */
+        byte[] run(RequestContext ctx, Callable<byte[]> work) throws Exception {
+            Lane lane = laneFor(ctx.path);
+            Future<byte[]> f;
+            try {
+                f = lane.pool.submit(() -> {
+                    if (System.nanoTime() - ctx.arrivalNanos > lane.deadlineNanos) {
+                        lane.expired.incrementAndGet();
+                        return UNAVAILABLE;
+                    }
+                    lane.served.incrementAndGet();
+                    return work.call();
+                });
+            } catch (RejectedExecutionException e) {
+                lane.rejected.incrementAndGet();
+                return UNAVAILABLE;
+            }
+            try {
+                return f.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        String statsJson() {
+            StringBuilder sb = new StringBuilder("{");
+            for (Lane l : new Lane[] { control, assets, ask }) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append('"').append(l.name).append("\":{\"threads\":").append(l.pool.getMaximumPoolSize())
+                    .append(",\"active\":").append(l.pool.getActiveCount())
+                    .append(",\"queued\":").append(l.pool.getQueue().size())
+                    .append(",\"deadlineMillis\":").append(TimeUnit.NANOSECONDS.toMillis(l.deadlineNanos))
+                    .append(",\"served\":").append(l.served.get())
+                    .append(",\"expired\":").append(l.expired.get())
+                    .append(",\"rejected\":").append(l.rejected.get()).append('}');
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    private static final class Lane {
+        static final String PROPERTY_PREFIX = "trumpsim.lane.";
+        final String name;
+        final ThreadPoolExecutor pool;
+        final long deadlineNanos;
+        final AtomicLong served = new AtomicLong();
+        final AtomicLong expired = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+
+        private Lane(String name, int threads, int queue, long deadlineMillis) {
+            this.name = name;
+            this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+            this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue), r -> {
+                Thread t = new Thread(r, "trumpsim-lane-" + name);
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        /** Defaults, overridden field by field by {@code trumpsim.lane.<name>}; empty fields keep the default. */
+        static Lane configure(String name, int threads, int queue, long deadlineMillis) {
+            String v = System.getProperty(PROPERTY_PREFIX + name);
+            if (v != null) {
+                String[] parts = v.split(",");
+                try {
+                    if (parts.length > 0 && !parts[0].isBlank()) threads = Math.max(1, Integer.parseInt(parts[0].trim()));
+                    if (parts.length > 1 && !parts[1].isBlank()) queue = Math.max(1, Integer.parseInt(parts[1].trim()));
+                    if (parts.length > 2 && !parts[2].isBlank()) deadlineMillis = Math.max(1, Long.parseLong(parts[2].trim()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring " + PROPERTY_PREFIX + name + "=" + v);
+                }
+            }
+            return new Lane(name, threads, queue, deadlineMillis);
+        }
+    }
+
+    /**
+     * One engine shard: its own bank and engine, driven by a single-thread loop so engine state and the
+     * per-thread scratch buffers are never shared. Counters are written by the loop only, except
+     * {@code rejected}, counted by callers that find the {@link #QUEUE_CAPACITY} backlog full. Each shard
+     * also keeps its own {@link HeavyHitters}, so recording never contends across shards.
+     */
+    private static final class Shard {
+        static final int QUEUE_CAPACITY = 1024;
+        final int id;
+        final TrumpSimEngine engine;
+        final ThreadPoolExecutor loop;
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong expired = new AtomicLong();
+
+        Shard(int id, ScoringModel scoring) {
+            this.id = id;
+            this.engine = new TrumpSimEngine(new XenonResponseBank(XenonResponseBank.SEED + id * 0x9E3779B97F4A7C15L), scoring,
+                new HeavyHitters());
+            this.loop = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                Thread t = new Thread(r, "trumpsim-shard-" + id);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        /**
+         * Runs {@link #dispatch} on the loop and waits for it; 503 if the backlog is full, or if the request is
+         * older than {@code deadlineNanos} by the time the loop reaches it.
+         */
+        byte[] run(RequestContext ctx, TrumpSim server, long deadlineNanos) throws Exception {
+            Future<byte[]> f;
+            try {
+                f = loop.submit(() -> {
+                    if (System.nanoTime() - ctx.arrivalNanos > deadlineNanos) {
+                        expired.incrementAndGet();
+                        return Lanes.UNAVAILABLE;
+                    }
+                    return dispatch(ctx, server);
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                return Lanes.UNAVAILABLE;
+            }
+            try {
+                return f.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        byte[] dispatch(RequestContext ctx, TrumpSim server) {
+            long start = System.nanoTime();
+            try {
+                return server.dispatch(ctx, engine);
+            } finally {
+                requests.incrementAndGet();
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /** Consistent-hash ring over shards; {@link #VNODES} points per shard keep the spread even. */
+    private static final class ShardRouter {
+        private static final int VNODES = 64;
+        private final Shard[] shards;
+        private final int[] ring;
+        private final int[] owner;
+
+        ShardRouter(int count, ScoringModel scoring) {
+            shards = new Shard[count];
+            for (int i = 0; i < count; i++) shards[i] = new Shard(i, scoring);
+            long[] points = new long[count * VNODES];
+            for (int i = 0; i < count; i++) {
+                for (int v = 0; v < VNODES; v++) {
+                    int h = mix(i * VNODES + v + 0x5bd1e995);
+                    points[i * VNODES + v] = ((long) h << 32) | i;
+                }
+            }
+            Arrays.sort(points);
+            ring = new int[points.length];
+            owner = new int[points.length];
+            for (int k = 0; k < points.length; k++) {
+                ring[k] = (int) (points[k] >> 32);
+                owner[k] = (int) points[k];
+            }
+        }
+
+        int size() {
+            return shards.length;
+        }
+
+        Shard route(String session) {
+            int h = mix(session == null ? 0 : session.hashCode());
+            int k = Arrays.binarySearch(ring, h);
+            if (k < 0) k = -k - 1;
+            if (k == ring.length) k = 0;
+            return shards[owner[k]];
+        }
+
+        String statsJson() {
+            StringBuilder sb = new StringBuilder("{\"shards\":[");
+            for (Shard s : shards) {
+                if (s.id > 0) sb.append(',');
+                long n = s.requests.get();
+                sb.append("{\"id\":").append(s.id)
+                    .append(",\"requests\":").append(n)
+                    .append(",\"busyMicros\":").append(s.busyNanos.get() / 1000)
+                    .append(",\"queued\":").append(s.loop.getQueue().size())
+                    .append(",\"rejected\":").append(s.rejected.get())
+                    .append(",\"expired\":").append(s.expired.get())
+                    .append('}');
+            }
+            return sb.append("]}").toString();
+        }
+
+        List<HeavyHitters> trackers() {
+            List<HeavyHitters> all = new ArrayList<>(shards.length + 1);
+            for (Shard s : shards) all.add(s.engine.hot);
+            return all;
+        }
+
+        /** Murmur3 finalizer; spreads String.hashCode() over the ring. */
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+
+    /** Immutable config: unique hex identifiers for this build only. */
+    private static final class TrumpSimConfig {
+        static final String CFG_NODE_A = "0xb3e8f1a2c5d7094e";
+        static final String CFG_NODE_B = "0x2f6a9d4c8e1b3075";
+        static final String CFG_SALT_HEX = "0x4d7c2e9f1a8b603d";
+        static final int MAX_INPUT_LEN = 2000;
+        static final int MAX_REPLY_LEN = 1500;
+        /** System property naming a scoring weights file; {@code --weights} overrides it. */
+        static final String WEIGHTS_PROPERTY = "trumpsim.weights";
+    }
+
+    /** Sanitizes user input for safe handling. */
+    private static final class InputSanitizer {
+        static String apply(String raw) {
+            if (raw == null) return "";
+            String s = raw.trim();
+            if (s.length() > TrumpSimConfig.MAX_INPUT_LEN) s = s.substring(0, TrumpSimConfig.MAX_INPUT_LEN);
+            return s.replace("\u0000", "");
+        }
+    }
+
+    /** Optional in-memory session; no PII persisted. */
+    private static final class SessionHistory {
+        private static final int CAP = 50;
+        private final Deque<String> recent = new LinkedList<>();
+
+        void push(String query) {
+            recent.addFirst(InputSanitizer.apply(query));
+            while (recent.size() > CAP) recent.removeLast();
+        }
+
+        int size() { return recent.size(); }
+    }
+
+    // ========== TrumpSim Engine ==========
+    private static final class TrumpSimEngine {
+        private static final long SEED = 0x5E7B9D1A3C4F6082L;
+        private final Random rng;
+        private final XenonResponseBank bank;
+        private final ScoringModel scoring;
+        /** Where replies are counted: the shared {@link HeavyHitters#TRACKER}, or a shard's own. */
+        final HeavyHitters hot;
+
+        TrumpSimEngine(XenonResponseBank bank) {
+            this(bank, ScoringModel.defaults());
+        }
+
+        TrumpSimEngine(XenonResponseBank bank, ScoringModel scoring) {
+            this(bank, scoring, HeavyHitters.TRACKER);
+        }
+
+        TrumpSimEngine(XenonResponseBank bank, ScoringModel scoring, HeavyHitters hot) {
+            this.rng = new Random(SEED);
+            this.bank = bank;
+            this.scoring = scoring;
+            this.hot = hot;
+        }
+
+        static final CategoryHint[] HINTS = CategoryHint.values();
+        private static final ThreadLocal<InputBuffer> SCRATCH = ThreadLocal.withInitial(InputBuffer::new);
+
+        String respond(String input) {
+            return reply(input).text;
+        }
+
+        /** Sanitizes and case-folds {@code input} into the per-thread buffer; no String copies. */
+        Reply reply(CharSequence input) {
+            return select(SCRATCH.get().load(input));
+        }
+
+        /** Same as {@link #reply(CharSequence)} for already percent-decoded UTF-8 bytes. */
+        Reply reply(byte[] utf8, int off, int len) {
+            return select(SCRATCH.get().load(utf8, off, len));
+        }
+
+        private Reply select(InputBuffer in) {
+            Reply reply = choose(in);
+            hot.record(in.chars, in.len, reply.hint);
+            return reply;
+        }
+
+        private Reply choose(InputBuffer in) {
+            if (in.len == 0) return new Reply(CategoryHint.GENERIC, bank.pick(bank.genericOpeners), in.scores);
+            if (in.len <= 3) return new Reply(CategoryHint.GENERIC, bank.pickOneLiner(), in.scores);
+            Flight.Categorized categorized = Flight.categorizing();
+            CategoryHint hint = categorize(in);
+            Flight.categorized(categorized, hint, in.scores, in.len);
+            Flight.ReplySelected selected = Flight.selecting();
+            List<String> pool = bank.forCategory(hint);
+            char[] keyword = hint == CategoryHint.GENERIC ? null : scoring.keyword(in.terms[hint.ordinal()]);
+            String reply = bank.compose(pool, keyword);
+            Flight.selected(selected, hint, pool.size(), reply.length());
+            return new Reply(hint, reply, in.scores);
+        }
+
+        /** Highest weighted score wins; ties go to the larger exact-match share, then enum order. */
+        private CategoryHint categorize(InputBuffer in) {
+            int[] scores = in.scores;
+            int[] exact = in.exact;
+            scoring.score(in.chars, in.len, scores, exact, in.terms);
+            int best = -1;
+            for (int c = 0; c < scores.length; c++) {
+                if (scores[c] <= 0) continue;
+                if (best < 0 || scores[c] > scores[best] || (scores[c] == scores[best] && exact[c] > exact[best])) best = c;
+            }
+            return best < 0 ? CategoryHint.GENERIC : HINTS[best];
+        }
+    }
+
+    /**
+     * Reply handle returned by the engine: selected text plus the category it came from. {@code scores} is
+     * the per-thread scratch array (indexed by category ordinal) and is only valid until this thread's next reply.
+     */
+    private static final class Reply {
+        final CategoryHint hint;
+        final String text;
+        final int[] scores;
+
+        Reply(CategoryHint hint, String text, int[] scores) {
+            this.hint = hint;
+            this.text = text;
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * Per-thread input scratch. {@link #load} applies the {@link InputSanitizer} rules (trim, cap at
+     * MAX_INPUT_LEN, drop NULs) and lower-cases in a single pass, so nothing proportional to the input is allocated.
+     */
+    private static final class InputBuffer {
+        final char[] chars = new char[TrumpSimConfig.MAX_INPUT_LEN];
+        final int[] scores = new int[ScoringModel.CATEGORIES];
+        final int[] exact = new int[ScoringModel.CATEGORIES];
+        /** Per category, the first single-word term matched exactly (-1 if none); feeds the {@code {keyword}} slot. */
+        final int[] terms = new int[ScoringModel.CATEGORIES];
+        int len;
+
+        InputBuffer load(CharSequence raw) {
+            reset();
+            if (raw == null) return this;
+            int i = 0;
+            int end = raw.length();
+            while (i < end && raw.charAt(i) <= ' ') i++;
+            while (end > i && raw.charAt(end - 1) <= ' ') end--;
+            int stop = Math.min(end, i + TrumpSimConfig.MAX_INPUT_LEN);
+            for (; i < stop; i++) put(raw.charAt(i));
+            return this;
+        }
+
+        InputBuffer load(byte[] utf8, int off, int n) {
+            reset();
+            if (utf8 == null) return this;
+            int i = off;
+            int end = off + n;
+            while (i < end && (utf8[i] & 0xFF) <= ' ') i++;
+            while (end > i && (utf8[end - 1] & 0xFF) <= ' ') end--;
+            int taken = 0;
+            while (i < end && taken < TrumpSimConfig.MAX_INPUT_LEN) {
+                int b = utf8[i] & 0xFF;
+                int cp;
+                int width;
+                if (b < 0x80) {
+                    cp = b;
+                    width = 1;
+                } else if (b >= 0xC2 && b < 0xE0 && i + 1 < end && cont(utf8[i + 1])) {
+                    cp = ((b & 0x1F) << 6) | (utf8[i + 1] & 0x3F);
+                    width = 2;
+                } else if (b >= 0xE0 && b < 0xF0 && i + 2 < end && cont(utf8[i + 1]) && cont(utf8[i + 2])) {
+                    cp = ((b & 0x0F) << 12) | ((utf8[i + 1] & 0x3F) << 6) | (utf8[i + 2] & 0x3F);
+                    width = 3;
+                    if (cp < 0x800 || Character.isSurrogate((char) cp)) cp = 0xFFFD;
+                } else if (b >= 0xF0 && b < 0xF5 && i + 3 < end && cont(utf8[i + 1]) && cont(utf8[i + 2]) && cont(utf8[i + 3])) {
+                    cp = ((b & 0x07) << 18) | ((utf8[i + 1] & 0x3F) << 12) | ((utf8[i + 2] & 0x3F) << 6) | (utf8[i + 3] & 0x3F);
+                    width = 4;
+                    if (cp < 0x10000 || cp > Character.MAX_CODE_POINT) cp = 0xFFFD;
+                } else {
+                    cp = 0xFFFD;
+                    width = 1;
+                }
+                i += width;
+                if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    put((char) cp);
+                    taken++;
+                } else {
+                    put(Character.highSurrogate(cp));
+                    if (++taken < TrumpSimConfig.MAX_INPUT_LEN) put(Character.lowSurrogate(cp));
+                    taken++;
+                }
+            }
+            return this;
+        }
+
+        private void reset() {
+            len = 0;
+            Arrays.fill(scores, 0);
+            Arrays.fill(exact, 0);
+        }
+
+        private void put(char c) {
+            if (c != '\u0000') chars[len++] = Character.toLowerCase(c);
+        }
+
+        private static boolean cont(byte b) {
+            return (b & 0xC0) == 0x80;
+        }
+    }
+
+    private enum CategoryHint {
+        DEAL, MEDIA, WINNING, MONEY, LEADERSHIP, OPPONENT, TRUTH, PEOPLE, ADVICE, GENERIC
+    }
+
+    /** Extended phrase weights for scoring; unique token set for this build. */
+    private static final class PhraseWeights {
+        static final int WEIGHT_PRIMARY = 3;
+        static final int WEIGHT_SECONDARY = 1;
+        static final String TOKEN_PREFIX = "xenon:";
+        static final long WEIGHT_SEED = 0x9A4F2C8E1B7D5036L;
+    }
+
+    /**
+     * Weighted category scoring. Every term carries a weight; a token (or, for phrase terms, a run of tokens)
+     * equal to the term scores {@code exactWeight * weight}, a prefix relation of at least {@link #MIN_PREFIX}
+     * chars either way with a single-word term scores {@code prefixWeight * weight} (phrases only count in full),
+     * and a word matching neither scores {@code fuzzyWeight * weight} for the nearest terms within
+     * {@link FuzzyIndex#maxEdits} typos. A category with nothing but typo matches needs them from at least
+     * {@link #MIN_FUZZY_WORDS} different words, so one ordinary word ("dinner", "honey") is not a topic.
+     * Defaults are {@link #DEFAULT_TERMS} at weight 1 with {@link PhraseWeights} match weights; a properties
+     * file may override them:
+     * <pre>
+     * match.exact=3
+     * match.prefix=1
+     * match.fuzzy=1           # 0 disables typo matching
+     * deal.negotiate=2        # &lt;category&gt;.&lt;term&gt;=&lt;weight&gt;; new terms are added, 0 removes
+     * advice.what\ would=2
+     * </pre>
+     * Any other key, and any weight that is not a non-negative integer, makes {@link #load} fail.
+     */
+    private static final class ScoringModel {
+        static final int CATEGORIES = CategoryHint.GENERIC.ordinal();
+        static final int MIN_PREFIX = 3;
+        static final int MIN_FUZZY_WORDS = 2;
+        /** Per category: fuzzy score, distinct words that voted, and the start of the last word that voted. */
+        private static final ThreadLocal<int[]> FUZZY_VOTES = ThreadLocal.withInitial(() -> new int[3 * CATEGORIES]);
+        /** Built-in vocabulary indexed by {@link CategoryHint#ordinal()}; plain arrays so boot builds no hash tables. */
+        static final String[][] DEFAULT_TERMS = {
+            { "deal", "negotiate", "contract", "merge", "acquisition", "leverage", "close", "terms", "agreement" },
+            { "media", "press", "twitter", "news", "tweet", "interview", "headline", "coverage" },
+            { "win", "lose", "winner", "loser", "beat", "best", "greatest", "victory", "champion" },
+            { "money", "profit", "rich", "wealth", "billion", "invest", "revenue", "cash", "asset" },
+            { "lead", "president", "america", "country", "nation", "govern", "policy" },
+            { "enemy", "opponent", "fight", "attack", "crooked", "rival", "competitor" },
+            { "truth", "fake", "lie", "wrong", "right", "believe", "fact", "real" },
+            { "people", "crowd", "support", "love", "huge", "base", "voter", "citizen" },
+            { "advice", "should", "what would", "how do", "how to", "recommend", "suggest" }
+        };
+        private final char[][] terms;
+        /** Multi-word terms; these only ever match in full, never by prefix. */
+        private final boolean[] phrase;
+        private final int[] category;
+        private final int[] weight;
+        private final int exactWeight;
+        private final int prefixWeight;
+        private final int fuzzyWeight;
+        /** Typo fallback for words that matched nothing; built by {@link #fuzzy()} the first time one needs it. */
+        private volatile FuzzyIndex fuzzy;
+
+        private ScoringModel(List<Map<String, Integer>> byCategory, int exactWeight, int prefixWeight, int fuzzyWeight) {
+            int n = 0;
+            for (Map<String, Integer> m : byCategory) n += m.size();
+            this.terms = new char[n][];
+            this.phrase = new boolean[n];
+            this.category = new int[n];
+            this.weight = new int[n];
+            int i = 0;
+            for (int c = 0; c < byCategory.size(); c++) {
+                for (Map.Entry<String, Integer> e : byCategory.get(c).entrySet()) {
+                    terms[i] = e.getKey().toCharArray();
+                    for (char ch : terms[i]) if (!isWordChar(ch)) phrase[i] = true;
+                    category[i] = c;
+                    weight[i] = e.getValue();
+                    i++;
+                }
+            }
+            this.exactWeight = exactWeight;
+            this.prefixWeight = prefixWeight;
+            this.fuzzyWeight = fuzzyWeight;
+        }
+
+        /** The typo index, built on first use so a run that never sees an unmatched word never pays for it. */
+        FuzzyIndex fuzzy() {
+            FuzzyIndex f = fuzzy;
+            if (f == null) {
+                synchronized (this) {
+                    f = fuzzy;
+                    if (f == null) fuzzy = f = new FuzzyIndex(terms);
+                }
+            }
+            return f;
+        }
+
+        /** Default model, built once on first use straight from {@link #DEFAULT_TERMS}. */
+        private static final class Defaults {
+            static final ScoringModel MODEL = new ScoringModel(vocabulary(), PhraseWeights.WEIGHT_PRIMARY,
+                PhraseWeights.WEIGHT_SECONDARY, PhraseWeights.WEIGHT_SECONDARY);
+        }
+
+        static ScoringModel defaults() {
+            return Defaults.MODEL;
+        }
+
+        /**
+         * Loads overrides from {@code path}, or the defaults if it is null. Throws if the file cannot be read or
+         * a key is not {@code match.exact|prefix|fuzzy} or {@code <category>.<term>}, or its value is not a
+         * non-negative integer; the message names the key.
+         */
+        static ScoringModel load(String path) throws IOException {
+            if (path == null) return defaults();
+            Properties props = new Properties();
+            try (Reader r = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
+                props.load(r);
+            }
+            List<Map<String, Integer>> vocab = vocabulary();
+            int exact = intProp(props, "match.exact", PhraseWeights.WEIGHT_PRIMARY);
+            int prefix = intProp(props, "match.prefix", PhraseWeights.WEIGHT_SECONDARY);
+            int fuzzy = intProp(props, "match.fuzzy", PhraseWeights.WEIGHT_SECONDARY);
+            for (String key : props.stringPropertyNames()) {
+                if (key.startsWith("match.")) {
+                    if (!key.equals("match.exact") && !key.equals("match.prefix") && !key.equals("match.fuzzy")) {
+                        throw new IllegalArgumentException("unknown key " + key);
+                    }
+                    continue;
+                }
+                int dot = key.indexOf('.');
+                CategoryHint hint = null;
+                if (dot > 0) {
+                    try { hint = CategoryHint.valueOf(key.substring(0, dot).toUpperCase(Locale.ROOT)); } catch (IllegalArgumentException e) { }
+                }
+                if (hint == null || hint == CategoryHint.GENERIC) throw new IllegalArgumentException("unknown category in key " + key);
+                String term = key.substring(dot + 1).trim().toLowerCase(Locale.ROOT);
+                if (term.isEmpty()) throw new IllegalArgumentException("empty term in key " + key);
+                int w = intProp(props, key, 0);
+                if (w == 0) vocab.get(hint.ordinal()).remove(term);
+                else vocab.get(hint.ordinal()).put(term, w);
+            }
+            return new ScoringModel(vocab, exact, prefix, fuzzy);
+        }
+
+        private static int intProp(Properties props, String key, int fallback) {
+            String v = props.getProperty(key);
+            if (v == null) return fallback;
+            int w;
+            try {
+                w = Integer.parseInt(v.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + "=" + v + " is not an integer");
+            }
+            if (w < 0) throw new IllegalArgumentException(key + "=" + v + " is negative");
+            return w;
+        }
+
+        private static List<Map<String, Integer>> vocabulary() {
+            List<Map<String, Integer>> out = new ArrayList<>(CATEGORIES);
+            for (String[] terms : DEFAULT_TERMS) {
+                Map<String, Integer> m = new LinkedHashMap<>();
+                for (String t : terms) m.put(t, 1);
+                out.add(m);
+            }
+            return out;
+        }
+
+        /**
+         * Scores all categories in one pass over the word tokens of {@code text[0..len)}, which must already be
+         * lower-cased. {@code exact} receives the exact-match share of each score and {@code firstTerm} the first
+         * single-word term each category matched exactly, i.e. as the caller typed it (-1 if none). A word that
+         * neither matches nor prefixes any term is looked up in the {@link FuzzyIndex}, and the closest terms score
+         * {@code fuzzyWeight}, subject to {@link #MIN_FUZZY_WORDS}. Allocates nothing.
+         */
+        void score(char[] text, int len, int[] scores, int[] exact, int[] firstTerm) {
+            Arrays.fill(scores, 0);
+            Arrays.fill(exact, 0);
+            Arrays.fill(firstTerm, -1);
+            int[] votes = fuzzyWeight > 0 ? FUZZY_VOTES.get() : null;
+            if (votes != null) Arrays.fill(votes, 0);
+            int i = 0;
+            while (i < len) {
+                while (i < len && !isWordChar(text[i])) i++;
+                int start = i;
+                while (i < len && isWordChar(text[i])) i++;
+                int wl = i - start;
+                if (wl == 0) break;
+                boolean matched = false;
+                for (int k = 0; k < terms.length; k++) {
+                    char[] t = terms[k];
+                    int c = category[k];
+                    if (t.length >= wl && start + t.length <= len && regionMatches(text, start, t, t.length)
+                            && (start + t.length == len || !isWordChar(text[start + t.length]))) {
+                        int w = exactWeight * weight[k];
+                        scores[c] += w;
+                        exact[c] += w;
+                        if (firstTerm[c] < 0 && !phrase[k]) firstTerm[c] = k;
+                        matched = true;
+                    } else if (!phrase[k] && Math.min(wl, t.length) >= MIN_PREFIX && regionMatches(text, start, t, Math.min(wl, t.length))) {
+                        scores[c] += prefixWeight * weight[k];
+                        matched = true;
+                    }
+                }
+                if (!matched && fuzzyWeight > 0) {
+                    FuzzyIndex.Matches m = fuzzy().closest(text, start, wl);
+                    for (int h = 0; h < m.count; h++) {
+                        int k = m.terms[h];
+                        int c = category[k];
+                        int w = fuzzyWeight * weight[k];
+                        scores[c] += w;
+                        votes[c] += w;
+                        if (votes[CATEGORIES + c] == 0 || votes[2 * CATEGORIES + c] != start) {
+                            votes[CATEGORIES + c]++;
+                            votes[2 * CATEGORIES + c] = start;
+                        }
+                    }
+                }
+            }
+            if (votes == null) return;
+            for (int c = 0; c < CATEGORIES; c++) {
+                if (scores[c] == votes[c] && votes[CATEGORIES + c] < MIN_FUZZY_WORDS) scores[c] = 0;
+            }
+        }
+
+        /** Term {@code k} as {@link #score} reports it (an exact, single-word match), or null for -1. */
+        char[] keyword(int k) {
+            return k < 0 ? null : terms[k];
+        }
+
+        /** Mirrors the {@code \W+} split: ASCII letters, digits and underscore. */
+        private static boolean isWordChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || (c >= 'A' && c <= 'Z');
+        }
+
+        private static boolean regionMatches(char[] text, int off, char[] t, int n) {
+            for (int k = 0; k < n; k++) if (text[off + k] != t[k]) return false;
+            return true;
+        }
+
+        /** Appends {@code "scores":{...}} for the categories that scored; used by {@code ?explain=1}. */
+        static void explain(StringBuilder sb, int[] scores) {
+            sb.append("\"scores\":{");
+            boolean first = true;
+            for (int c = 0; c < scores.length; c++) {
+                if (scores[c] == 0) continue;
+                if (!first) sb.append(',');
+                sb.append('"').append(TrumpSimEngine.HINTS[c].name()).append("\":").append(scores[c]);
+                first = false;
+            }
+            sb.append('}');
+        }
+    }
+
+    /**
+     * Symmetric-delete index over the single-word terms of a {@link ScoringModel}. Every term is stored under
+     * each string obtained by deleting up to {@link #maxEdits} of its characters, so a misspelled word finds
+     * its candidates by probing its own deletions: O(len^2) hash lookups however large the vocabulary is.
+     * Candidates are confirmed with the optimal-string-alignment distance (a transposition counts as one edit).
+     * Keys are 64-bit hashes of the deletions rather than strings, so lookups allocate nothing; a collision
+     * only costs one extra verification.
+     */
+    private static final class FuzzyIndex {
+        /** Longer words are not looked up; deletions grow quadratically and no term is this long. */
+        static final int MAX_WORD = 24;
+        private final char[][] terms;
+        private final long[] keys;
+        private final int[] first;
+        private final int[] count;
+        private final int[] postings;
+        private final int mask;
+        private final ThreadLocal<Matches> scratch;
+
+        /** Per-thread lookup result: {@code terms[0..count)} are the closest term indexes. Reused by the next lookup. */
+        static final class Matches {
+            final int[] terms;
+            final int[] seen;
+            final int[][] rows = new int[3][MAX_WORD + 1];
+            int count;
+            int stamp;
+
+            Matches(int n) {
+                terms = new int[n];
+                seen = new int[n];
+            }
+        }
+
+        /** Edit budget by word length: short words get none, so "lie" does not turn into "lead". */
+        static int maxEdits(int len) {
+            return len >= 8 ? 2 : len >= 5 ? 1 : 0;
+        }
+
+        FuzzyIndex(char[][] terms) {
+            this.terms = terms;
+            Map<Long, List<Integer>> byKey = new HashMap<>();
+            Set<String> variants = new HashSet<>();
+            for (int k = 0; k < terms.length; k++) {
+                char[] t = terms[k];
+                if (t.length > MAX_WORD || maxEdits(t.length) == 0 || !isWord(t)) continue;
+                variants.clear();
+                deletions(new String(t), maxEdits(t.length), variants);
+                for (String v : variants) {
+                    char[] c = v.toCharArray();
+                    byKey.computeIfAbsent(hash(c, 0, c.length, -1, -1), x -> new ArrayList<>(2)).add(k);
+                }
+            }
+            int cap = 16;
+            while (cap < byKey.size() * 2) cap <<= 1;
+            mask = cap - 1;
+            keys = new long[cap];
+            first = new int[cap];
+            count = new int[cap];
+            int total = 0;
+            for (List<Integer> l : byKey.values()) total += l.size();
+            postings = new int[total];
+            int p = 0;
+            for (Map.Entry<Long, List<Integer>> e : byKey.entrySet()) {
+                long key = e.getKey();
+                int slot = slot(key);
+                while (keys[slot] != 0) slot = (slot + 1) & mask;
+                keys[slot] = key;
+                first[slot] = p;
+                count[slot] = e.getValue().size();
+                for (int k : e.getValue()) postings[p++] = k;
+            }
+            scratch = ThreadLocal.withInitial(() -> new Matches(terms.length));
+        }
+
+        /** Terms at the smallest edit distance (at least 1) within budget of {@code text[off..off+len)}. */
+        Matches closest(char[] text, int off, int len) {
+            Matches m = scratch.get();
+            m.count = 0;
+            int d = len <= MAX_WORD ? maxEdits(len) : 0;
+            if (d == 0) return m;
+            if (++m.stamp == 0) {
+                Arrays.fill(m.seen, 0);
+                m.stamp = 1;
+            }
+            int best = probe(text, off, len, -1, -1, d, Integer.MAX_VALUE, m);
+            for (int i = 0; i < len; i++) {
+                best = probe(text, off, len, i, -1, d, best, m);
+                if (d == 2) for (int j = i + 1; j < len; j++) best = probe(text, off, len, i, j, d, best, m);
+            }
+            return m;
+        }
+
+        private int probe(char[] text, int off, int len, int skipA, int skipB, int d, int best, Matches m) {
+            long key = hash(text, off, len, skipA, skipB);
+            for (int slot = slot(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] != key) continue;
+                for (int p = first[slot], end = p + count[slot]; p < end; p++) {
+                    int k = postings[p];
+                    if (m.seen[k] == m.stamp) continue;
+                    m.seen[k] = m.stamp;
+                    char[] t = terms[k];
+                    int allowed = Math.min(d, maxEdits(t.length));
+                    if (Math.abs(t.length - len) > allowed) continue;
+                    int dist = distance(text, off, len, t, allowed, m.rows);
+                    if (dist == 0 || dist > allowed || dist > best) continue;
+                    if (dist < best) {
+                        best = dist;
+                        m.count = 0;
+                    }
+                    m.terms[m.count++] = k;
+                }
+            }
+            return best;
+        }
+
+        /** Optimal string alignment distance, or {@code limit + 1} as soon as every path exceeds {@code limit}. */
+        private static int distance(char[] a, int off, int n, char[] b, int limit, int[][] rows) {
+            int[] prev2 = rows[0];
+            int[] prev = rows[1];
+            int[] cur = rows[2];
+            for (int j = 0; j <= b.length; j++) prev[j] = j;
+            for (int i = 1; i <= n; i++) {
+                cur[0] = i;
+                int rowMin = i;
+                char ca = a[off + i - 1];
+                for (int j = 1; j <= b.length; j++) {
+                    int cost = ca == b[j - 1] ? 0 : 1;
+                    int v = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                    if (i > 1 && j > 1 && ca == b[j - 2] && a[off + i - 2] == b[j - 1]) v = Math.min(v, prev2[j - 2] + 1);
+                    cur[j] = v;
+                    rowMin = Math.min(rowMin, v);
+                }
+                if (rowMin > limit) return limit + 1;
+                int[] t = prev2;
+                prev2 = prev;
+                prev = cur;
+                cur = t;
+            }
+            return prev[b.length];
+        }
+
+        /** FNV-1a over the characters not at {@code skipA}/{@code skipB}; never 0, which marks empty slots. */
+        private static long hash(char[] s, int off, int len, int skipA, int skipB) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < len; i++) {
+                if (i == skipA || i == skipB) continue;
+                h ^= s[off + i];
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 31;
+            return h == 0 ? 1 : h;
+        }
+
+        private int slot(long key) {
+            return (int) (key ^ (key >>> 32)) & mask;
+        }
+
+        private static void deletions(String s, int d, Set<String> out) {
+            out.add(s);
+            if (d == 0) return;
+            for (int i = 0; i < s.length(); i++) deletions(s.substring(0, i) + s.substring(i + 1), d - 1, out);
+        }
+
+        private static boolean isWord(char[] t) {
+            for (char c : t) if (!ScoringModel.isWordChar(c)) return false;
+            return true;
+        }
+    }
+
+    /**
+     * {@code --bench-scoring}: per-call cost of {@link ScoringModel#score} with and without the fuzzy fallback,
+     * and of {@link FuzzyIndex#closest} alone as the vocabulary grows with synthetic terms.
+     */
+    private static final class ScoringBench {
+        private static final String[] CLEAN = {
+            "how do i negotiate a better contract", "the fake news media is the enemy",
+            "should i invest my money in real estate", "what makes a great president"
+        };
+        private static final String[] TYPOS = {
+            "how do i negotiaton a beter contrct", "the fkae nwes meida is the enmey",
+            "should i invset my mony in real estate", "what makes a great presidnet"
+        };
+        /** Ordinary words one edit from a term (might/fight, dinner/winner, honey/money); these must stay GENERIC. */
+        private static final String[] COMMON = {
+            "what might happen tonight", "where is the dinner", "i like honey"
+        };
+        private static final int ROUNDS = 200_000;
+        /** Folds every measured result so the JIT cannot drop the calls; printed at the end. */
+        private static long checksum;
+
+        static void run() {
+            ScoringModel plain = model(0, 0);
+            ScoringModel fuzzy = model(0, PhraseWeights.WEIGHT_SECONDARY);
+            System.out.printf("score() clean input, fuzzy off   %6.0f ns%n", score(plain, CLEAN));
+            System.out.printf("score() clean input, fuzzy on    %6.0f ns%n", score(fuzzy, CLEAN));
+            System.out.printf("score() typo input,  fuzzy off   %6.0f ns%n", score(plain, TYPOS));
+            System.out.printf("score() typo input,  fuzzy on    %6.0f ns%n", score(fuzzy, TYPOS));
+            boolean regressed = false;
+            for (String input : COMMON) {
+                int[] scores = new int[ScoringModel.CATEGORIES];
+                char[] t = input.toCharArray();
+                fuzzy.score(t, t.length, scores, new int[scores.length], new int[scores.length]);
+                for (int c = 0; c < scores.length; c++) {
+                    if (scores[c] == 0) continue;
+                    System.out.printf("REGRESSION: \"%s\" scores %s%n", input, TrumpSimEngine.HINTS[c]);
+                    regressed = true;
+                }
+            }
+            for (int extra : new int[] { 0, 1_000, 10_000, 100_000 }) {
+                ScoringModel m = model(extra, PhraseWeights.WEIGHT_SECONDARY);
+                System.out.printf("closest() %7d terms            %6.0f ns%n", m.terms.length, closest(m.fuzzy()));
+            }
+            System.out.printf("checksum %016x%n", checksum);
+            if (regressed) System.exit(1);
+        }
+
+        private static ScoringModel model(int syntheticTerms, int fuzzyWeight) {
+            List<Map<String, Integer>> vocab = ScoringModel.vocabulary();
+            Random rnd = new Random(PhraseWeights.WEIGHT_SEED);
+            for (int i = 0; i < syntheticTerms; i++) {
+                char[] w = new char[5 + rnd.nextInt(6)];
+                for (int k = 0; k < w.length; k++) w[k] = (char) ('a' + rnd.nextInt(26));
+                vocab.get(i % ScoringModel.CATEGORIES).put(new String(w), 1);
+            }
+            return new ScoringModel(vocab, PhraseWeights.WEIGHT_PRIMARY, PhraseWeights.WEIGHT_SECONDARY, fuzzyWeight);
+        }
+
+        private static double score(ScoringModel m, String[] inputs) {
+            char[][] texts = new char[inputs.length][];
+            for (int i = 0; i < inputs.length; i++) texts[i] = inputs[i].toCharArray();
+            int[] scores = new int[ScoringModel.CATEGORIES];
+            int[] exact = new int[ScoringModel.CATEGORIES];
+            int[] first = new int[ScoringModel.CATEGORIES];
+            long sink = 0;
+            long elapsed = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                long t0 = System.nanoTime();
+                for (int r = 0; r < ROUNDS; r++) {
+                    char[] t = texts[r % texts.length];
+                    m.score(t, t.length, scores, exact, first);
+                    sink += scores[r % scores.length];
+                }
+                elapsed = System.nanoTime() - t0;
+            }
+            checksum += sink;
+            return (double) elapsed / ROUNDS;
+        }
+
+        private static double closest(FuzzyIndex index) {
+            char[][] words = { "negotiaton".toCharArray(), "presidnet".toCharArray(), "contrct".toCharArray(), "zzzzzzzz".toCharArray() };
+            long sink = 0;
+            long elapsed = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                long t0 = System.nanoTime();
+                for (int r = 0; r < ROUNDS; r++) {
+                    char[] w = words[r % words.length];
+                    sink += index.closest(w, 0, w.length).count;
+                }
+                elapsed = System.nanoTime() - t0;
+            }
+            checksum += sink;
+            return (double) elapsed / ROUNDS;
+        }
+    }
+
+    /**
+     * Fixed-memory heavy-hitter tracker fed by every engine reply. Inputs are reduced to a 64-bit fingerprint
+     * of their normalized words (nothing of the text is kept, in line with {@link SessionHistory}), counted in
+     * a Count-Min sketch, and the {@link #TOP_K} largest estimates are kept in a copy-on-write min-heap swapped
+     * by CAS. Recording is lock-free: {@link #DEPTH} atomic increments, a category counter and, only when the
+     * input beats the heap minimum or has grown noticeably since it was last written, one heap copy.
+     */
+    private static final class HeavyHitters {
+        static final int WIDTH = 4096;
+        static final int DEPTH = 4;
+        static final int TOP_K = 32;
+        static final int SNAPSHOT_SECONDS = 60;
+        static final HeavyHitters TRACKER = new HeavyHitters();
+
+        private final AtomicLongArray sketch = new AtomicLongArray(WIDTH * DEPTH);
+        private final LongAdder[] byCategory = new LongAdder[CategoryHint.values().length];
+        private final LongAdder total = new LongAdder();
+        private final AtomicReference<Top> top = new AtomicReference<>(new Top(new long[0], new long[0]));
+
+        HeavyHitters() {
+            for (int i = 0; i < byCategory.length; i++) byCategory[i] = new LongAdder();
+        }
+
+        /**
+         * One tracker summing {@code parts}: sketches add cell by cell, and the top is re-ranked from every part's
+         * top against the summed sketch, so a question spread over several shards still counts in full.
+         */
+        static HeavyHitters merge(List<HeavyHitters> parts) {
+            HeavyHitters m = new HeavyHitters();
+            long[] cells = new long[WIDTH * DEPTH];
+            Set<Long> candidates = new HashSet<>();
+            for (HeavyHitters p : parts) {
+                for (int i = 0; i < cells.length; i++) cells[i] += p.sketch.get(i);
+                for (int i = 0; i < m.byCategory.length; i++) m.byCategory[i].add(p.byCategory[i].sum());
+                m.total.add(p.total.sum());
+                for (long h : p.top.get().hashes) candidates.add(h);
+            }
+            for (int i = 0; i < cells.length; i++) m.sketch.set(i, cells[i]);
+            Top t = m.top.get();
+            for (long h : candidates) t = t.with(h, m.estimate(h));
+            m.top.set(t);
+            return m;
+        }
+
+        /** Immutable heap snapshot ordered by count, smallest at index 0. */
+        private static final class Top {
+            final long[] hashes;
+            final long[] counts;
+
+            Top(long[] hashes, long[] counts) {
+                this.hashes = hashes;
+                this.counts = counts;
+            }
+
+            /** The heap with {@code hash} at {@code count}, or this one if the change is not worth a copy. */
+            Top with(long hash, long count) {
+                int n = hashes.length;
+                for (int i = 0; i < n; i++) {
+                    if (hashes[i] != hash) continue;
+                    if (count < counts[i] + Math.max(1, counts[i] >> 6)) return this;
+                    Top next = copy(n);
+                    next.counts[i] = count;
+                    next.siftDown(i);
+                    return next;
+                }
+                if (n < TOP_K) {
+                    Top next = copy(n + 1);
+                    next.hashes[n] = hash;
+                    next.counts[n] = count;
+                    next.siftUp(n);
+                    return next;
+                }
+                if (count <= counts[0]) return this;
+                Top next = copy(n);
+                next.hashes[0] = hash;
+                next.counts[0] = count;
+                next.siftDown(0);
+                return next;
+            }
+
+            private Top copy(int n) {
+                return new Top(Arrays.copyOf(hashes, n), Arrays.copyOf(counts, n));
+            }
+
+            private void siftUp(int i) {
+                while (i > 0 && counts[(i - 1) / 2] > counts[i]) {
+                    swap(i, (i - 1) / 2);
+                    i = (i - 1) / 2;
+                }
+            }
+
+            private void siftDown(int i) {
+                while (true) {
+                    int l = 2 * i + 1;
+                    int m = i;
+                    if (l < counts.length && counts[l] < counts[m]) m = l;
+                    if (l + 1 < counts.length && counts[l + 1] < counts[m]) m = l + 1;
+                    if (m == i) return;
+                    swap(i, m);
+                    i = m;
+                }
+            }
+
+            private void swap(int a, int b) {
+                long h = hashes[a];
+                hashes[a] = hashes[b];
+                hashes[b] = h;
+                long c = counts[a];
+                counts[a] = counts[b];
+                counts[b] = c;
+            }
+        }
+
+        void record(char[] text, int len, CategoryHint hint) {
+            total.increment();
+            byCategory[hint.ordinal()].increment();
+            long fp = fingerprint(text, len);
+            long estimate = Long.MAX_VALUE;
+            for (int d = 0; d < DEPTH; d++) estimate = Math.min(estimate, sketch.incrementAndGet(cell(fp, d)));
+            while (true) {
+                Top cur = top.get();
+                if (cur.hashes.length == TOP_K && estimate <= cur.counts[0]) return;
+                Top next = cur.with(fp, estimate);
+                if (next == cur || top.compareAndSet(cur, next)) return;
+            }
+        }
+
+        long estimate(long fp) {
+            long estimate = Long.MAX_VALUE;
+            for (int d = 0; d < DEPTH; d++) estimate = Math.min(estimate, sketch.get(cell(fp, d)));
+            return estimate;
+        }
+
+        /** Row {@code d}'s cell via double hashing from the two halves of the fingerprint. */
+        private static int cell(long fp, int d) {
+            int h1 = (int) fp;
+            int h2 = (int) (fp >>> 32) | 1;
+            return d * WIDTH + ((h1 + d * h2) & (WIDTH - 1));
+        }
+
+        /** FNV-1a over the word tokens of already lower-cased text, separated by one space whatever sat between them. */
+        static long fingerprint(char[] text, int len) {
+            long h = 0xcbf29ce484222325L;
+            boolean gap = false;
+            boolean any = false;
+            for (int i = 0; i < len; i++) {
+                char c = text[i];
+                if (!ScoringModel.isWordChar(c)) {
+                    gap = any;
+                    continue;
+                }
+                if (gap) {
+                    h = (h ^ ' ') * 0x100000001b3L;
+                    gap = false;
+                }
+                h = (h ^ c) * 0x100000001b3L;
+                any = true;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            return h ^ (h >>> 33);
+        }
+
+        static String hex(long fp) {
+            return String.format("%016x", fp);
+        }
+
+        /** Appends the report fields (no enclosing braces), heaviest first. */
+        void appendJson(StringBuilder sb) {
+            long n = total.sum();
+            sb.append("\"total\":").append(n).append(",\"sketch\":{\"width\":").append(WIDTH)
+                .append(",\"depth\":").append(DEPTH).append(",\"overestimateBound\":")
+                .append((long) Math.ceil(Math.E / WIDTH * n)).append("},\"categories\":{");
+            CategoryHint[] hints = CategoryHint.values();
+            for (int i = 0; i < hints.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('"').append(hints[i].name()).append("\":").append(byCategory[i].sum());
+            }
+            sb.append("},\"top\":[");
+            Top t = top.get();
+            Integer[] order = new Integer[t.hashes.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(t.counts[b], t.counts[a]));
+            for (int i = 0; i < order.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append("{\"hash\":\"").append(hex(t.hashes[order[i]])).append("\",\"count\":").append(t.counts[order[i]]).append('}');
+            }
+            sb.append(']');
+        }
+
+        /** Writes the report of {@code view} to {@code file} every {@code seconds} and at shutdown, replacing it atomically. */
+        static void snapshotEvery(Path file, int seconds, Supplier<HeavyHitters> view) {
+            Runnable write = () -> {
+                StringBuilder sb = new StringBuilder(2048).append("{\"at\":").append(System.currentTimeMillis()).append(',');
+                view.get().appendJson(sb);
+                sb.append("}\n");
+                try {
+                    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                    Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    System.err.println("Heavy-hitter snapshot failed: " + e.getMessage());
+                }
+            };
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "trumpsim-hot-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleAtFixedRate(write, seconds, seconds, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(write, "trumpsim-hot-snapshot-exit"));
+        }
+    }
+
+    /**
+     * Template-based reply composition. A template such as {@code "{opener} {body}{closer}"} is compiled once,
+     * when the bank is built, into (op, arg, arg) triples in one flat int array over a shared literal pool, and
+     * rendered by copying pool entries into a per-thread char buffer capped at MAX_REPLY_LEN: no regex, no
+     * concatenation, and one String per reply. Slots are {@code {opener}}, {@code {body}}, {@code {closer}} and
+     * {@code {keyword}} / {@code {Keyword}} (capitalized), which insert a single-word scoring term the input
+     * contains verbatim (prefix and typo matches never fill it, so the caller is not misquoted); templates with a keyword slot are only drawn when there is one. A
+     * small set of templates over the existing pools multiplies the distinct replies without adding text to the heap.
+     */
+    private static final class ReplyComposer {
+        static final int LITERAL = 0;
+        static final int OPENER = 1;
+        static final int BODY = 2;
+        static final int CLOSER = 3;
+        static final int KEYWORD = 4;
+        static final int KEYWORD_CAPITALIZED = 5;
+        private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[TrumpSimConfig.MAX_REPLY_LEN]);
+
+        /** Instruction triples; for LITERAL the args are the literal's offset and length. */
+        private final int[] code;
+        /** Template {@code t} runs {@code code[start[t] .. start[t + 1])}. */
+        private final int[] start;
+        private final int[] cumulativeWeight;
+        /** As {@link #cumulativeWeight} with keyword templates weighted 0, for inputs without a keyword. */
+        private final int[] plainCumulativeWeight;
+        private final char[] literals;
+
+        private ReplyComposer(int[] code, int[] start, int[] cumulativeWeight, int[] plainCumulativeWeight, char[] literals) {
+            this.code = code;
+            this.start = start;
+            this.cumulativeWeight = cumulativeWeight;
+            this.plainCumulativeWeight = plainCumulativeWeight;
+            this.literals = literals;
+        }
+
+        static ReplyComposer compile(String[] templates, int[] weights) {
+            StringBuilder pool = new StringBuilder();
+            int[] code = new int[0];
+            int n = 0;
+            int[] start = new int[templates.length + 1];
+            int[] cumulative = new int[templates.length];
+            int[] plain = new int[templates.length];
+            for (int t = 0; t < templates.length; t++) {
+                start[t] = n;
+                cumulative[t] = (t == 0 ? 0 : cumulative[t - 1]) + weights[t];
+                String src = templates[t];
+                boolean keyword = src.contains("{keyword}") || src.contains("{Keyword}");
+                plain[t] = (t == 0 ? 0 : plain[t - 1]) + (keyword ? 0 : weights[t]);
+                int i = 0;
+                while (i < src.length()) {
+                    int open = src.indexOf('{', i);
+                    int litEnd = open < 0 ? src.length() : open;
+                    int op;
+                    int off = pool.length();
+                    int len;
+                    if (litEnd > i) {
+                        pool.append(src, i, litEnd);
+                        op = LITERAL;
+                        len = litEnd - i;
+                        i = litEnd;
+                    } else {
+                        int close = src.indexOf('}', open);
+                        if (close < 0) throw new IllegalArgumentException("unclosed slot in template: " + src);
+                        String name = src.substring(open + 1, close);
+                        len = 0;
+                        switch (name) {
+                            case "opener": op = OPENER; break;
+                            case "body": op = BODY; break;
+                            case "closer": op = CLOSER; break;
+                            case "keyword": op = KEYWORD; break;
+                            case "Keyword": op = KEYWORD_CAPITALIZED; break;
+                            default: throw new IllegalArgumentException("unknown slot {" + name + "} in template: " + src);
+                        }
+                        i = close + 1;
+                    }
+                    if (n + 3 > code.length) code = Arrays.copyOf(code, Math.max(16, code.length * 2));
+                    code[n++] = op;
+                    code[n++] = off;
+                    code[n++] = len;
+                }
+            }
+            start[templates.length] = n;
+            char[] literals = new char[pool.length()];
+            pool.getChars(0, pool.length(), literals, 0);
+            if (plain[templates.length - 1] == 0) throw new IllegalArgumentException("every template needs a keyword");
+            return new ReplyComposer(Arrays.copyOf(code, n), start, cumulative, plain, literals);
+        }
+
+        String render(Random rng, List<String> openers, List<String> bodies, List<String> closers, char[] keyword) {
+            int[] weights = keyword != null ? cumulativeWeight : plainCumulativeWeight;
+            int r = rng.nextInt(weights[weights.length - 1]);
+            int t = 0;
+            while (weights[t] <= r) t++;
+            char[] out = BUFFER.get();
+            int n = 0;
+            for (int pc = start[t]; pc < start[t + 1]; pc += 3) {
+                int op = code[pc];
+                switch (op) {
+                    case OPENER: n = append(out, n, openers.get(rng.nextInt(openers.size()))); break;
+                    case BODY: n = append(out, n, bodies.get(rng.nextInt(bodies.size()))); break;
+                    case CLOSER: n = append(out, n, closers.get(rng.nextInt(closers.size()))); break;
+                    case LITERAL: n = append(out, n, literals, code[pc + 1], code[pc + 2]); break;
+                    default:
+                        int from = n;
+                        n = append(out, n, keyword, 0, keyword.length);
+                        if (op == KEYWORD_CAPITALIZED && from < n) out[from] = Character.toUpperCase(out[from]);
+                }
+            }
+            return new String(out, 0, n);
+        }
+
+        private static int append(char[] out, int n, String s) {
+            int len = Math.min(s.length(), out.length - n);
+            s.getChars(0, len, out, n);
+            return n + len;
+        }
+
+        private static int append(char[] out, int n, char[] src, int off, int len) {
+            len = Math.min(len, out.length - n);
+            System.arraycopy(src, off, out, n, len);
+            return n + len;
+        }
+    }
+
+    // ========== Xenon Response Bank (unique phrases) ==========
+    private static final class XenonResponseBank {
+        private static final long SEED = 0x8F1E4A2B6C0D9E3AL;
+        private static final List<String> CLOSERS = Arrays.asList(
+            " Believe me.", " That's the way it is.", " Big league.",
+            " Nobody else will tell you this.", " We're going to do great.",
+            " You'll see.", " It's going to be huge.", " Trust me on this."
+        );
+        private final List<String> genericOpeners = Arrays.asList(
+            "Look, you've got to think big. Really big.",
+            "Nobody knows this better than me. Nobody.",
+            "Let me tell you something—and I say this with total certainty.",
+            "Here's the thing. The thing that a lot of people don't get.",
+            "I've seen it a thousand times. A thousand."
+        );
+        /**
+         * Reply shapes and their relative weights; see {@link ReplyComposer} for the slots. Plain
+         * {@code {body}} and {@code {body}{closer}} keep the 3:1 ratio of the original pick().
+         */
+        private static final String[] TEMPLATES = {
+            "{body}",
+            "{body}{closer}",
+            "{opener} {body}",
+            "{opener} {body}{closer}",
+            "One word: {keyword}. Let me tell you something. {body}",
+            "{Keyword}? Everybody asks me about that. {body}{closer}",
+            "{body} And {keyword}? That's where it starts.",
+            "Nobody knows the word \"{keyword}\" better than me. Nobody. {body}",
+        };
+        private static final int[] TEMPLATE_WEIGHTS = { 12, 4, 2, 1, 2, 2, 1, 1 };
+        private final Random rng;
+        private final ReplyComposer composer = ReplyComposer.compile(TEMPLATES, TEMPLATE_WEIGHTS);
+
+        XenonResponseBank() {
+            this(SEED);
+        }
+
+        XenonResponseBank(long seed) {
+            this.rng = new Random(seed);
+        }
+
+        /**
+         * The category lines, built once on the first categorized reply and shared by every bank (each shard
+         * only differs in its seed), so boot and each extra shard pay nothing for them.
+         */
+        private static final class Lines {
+            static final Map<CategoryHint, List<String>> BY_CATEGORY = build();
+
+            private static Map<CategoryHint, List<String>> build() {
+                Map<CategoryHint, List<String>> byCategory = new EnumMap<>(CategoryHint.class);
+                byCategory.put(CategoryHint.DEAL, Arrays.asList(
+                    "You go in strong. You never show weakness. The deal gets made when they need you more than you need them.",
+                    "The best deals happen when the other guy thinks he's winning until the last second. Then you close. Beautiful.",
+                    "Never take the first offer. Never. Let them sweat. Then you get what you want.",
+                    "Deals are about leverage. Get leverage. Then you can do anything.",
+                    "I've made deals my whole life. The key? Walk away. Be ready to walk. They always come back.",
+                    "You've got to have options. When they know you've got options, the numbers move. Believe me.",
+                    "The art of the deal is simple: know what you want, know what they want, and make them think they're winning until the ink is dry.",
+                    "Never get emotional in a deal. Stay cool. Let them get emotional. That's when you win.",
+                    "Big league negotiators don't blink first. You don't blink.",
+                    "Always leave something on the table—something small. They feel good, you get the rest.",
+                    "Timing is everything. Strike when they're eager. Don't strike when you're desperate.",
+                    "Get everything in writing. Handshakes are for cameras. Paper is for courts.",
+                    "The best deal is the one where both sides think they won. You just make sure you won more.",
+                    "Never reveal your bottom line early. Make them work for every inch.",
+                    "Use silence. After you make an offer, shut up. The next person who talks loses.",
+                    "Know their deadline. If they need to close by Friday, don't move until Thursday.",
+                    "Bring a closer. Sometimes you need someone to say the number so you can shrug.",
+                    "Renegotiate when the facts change. A good deal today can be a bad deal tomorrow.",
+                    "Never bad-mouth the other side in public. You might need them again.",
+                    "Celebrate after the ink dries. Until then, act like you could walk any second.",
+                    "Partnerships work when both sides need each other. Make sure you're not the only one who needs.",
+                    "The closing is an art. Don't rush it. Let the silence do the work.",
+                    "Counterparty risk is real. Know who you're dealing with before you sign.",
+                    "Verbal agreements aren't worth the paper they're written on. Get it in writing.",
+                    "The best negotiators are the best listeners. Listen first. Then speak.",
+                    "Never let them see your deadline. Act like you have all the time in the world.",
+                    "Multiple bidders change everything. Create competition when you can.",
+                    "The deal you don't do is sometimes the best deal. Walk away when it's wrong.",
+                    "Relationship matters after the deal. Don't burn the bridge at the closing.",
+                    "Read every clause. The devil is in the details. Every time.",
+                    "Renegotiation is always an option if the facts change. Build that in.",
+                    "The other side has a boss too. Sometimes you need to go over their head.",
+                    "Win-win is real when both sides feel they won. Get them there.",
+                    "No deal is better than a bad deal. Remember that when the pressure is on."
+                ));
+                byCategory.put(CategoryHint.MEDIA, Arrays.asList(
+                    "The media? You don't need them. You have your own platform. Use it. Direct to the people.",
+                    "When they attack, you hit back harder. Twice as hard. They can't take it.",
+                    "Don't explain. Don't apologize. State your case and move on. The real people get it.",
+                    "Social media is the megaphone. You say it once, the whole world hears. Use it.",
+                    "The press loves conflict. Give them a show—but on your terms. You control the narrative.",
+                    "Never let them put words in your mouth. You say what you say. Clear and simple.",
+                    "When they spin, you counter-spin. One tweet. Done. They spend a week reacting.",
+                    "The best response to bad press is success. Win so big they have to cover it.",
+                    "You don't need their permission to be heard. You need a phone and the truth.",
+                    "They want a sound bite? Give them a sound bite. But make it unforgettable.",
+                    "Headlines fade. Results last. Focus on results and the headlines will follow.",
+                    "Don't chase every story. Let some die. Not everything deserves a response.",
+                    "When you're winning, they'll try to change the subject. Keep the subject on winning.",
+                    "Fact-check them back. They get one wrong, you put it on the record. Forever.",
+                    "Your base doesn't get their news from the same place. Speak to your base directly.",
+                    "Interviews are optional. You don't owe them access. Use it as leverage.",
+                    "The more they repeat your name, the more you win. Even negative coverage is coverage.",
+                    "Never do an interview without knowing the host. Know their angle before you sit down.",
+                    "Leaks are for people who can't win in the open. Win in the open.",
+                    "One strong statement beats ten corrections. Get it right the first time."
+                ));
+                byCategory.put(CategoryHint.WINNING, Arrays.asList(
+                    "Winning isn't everything—it's the only thing. We're going to win so much you'll get tired of winning.",
+                    "Losers quit. Winners find a way. You're a winner. Act like it.",
+                    "Nobody wins by playing small. Think big. Then win big.",
+                    "When you're winning, the critics get louder. That's how you know you're winning.",
+                    "We're going to win in a way nobody has ever won before. Big league.",
+                    "Winners don't make excuses. They make results. You want to be a winner? Produce.",
+                    "The biggest wins come when everybody says it's impossible. Then you do it.",
+                    "Winning is a habit. You build it one victory at a time. Start today.",
+                    "Don't hope to win. Plan to win. Then execute. That's winning.",
+                    "We're not here to participate. We're here to win. Period.",
+                    "Every day you don't quit is a day you're still in the game. Stay in the game.",
+                    "Small wins add up. Stack them. Then go for the big one.",
+                    "The scoreboard doesn't lie. If you're not winning yet, change the playbook.",
+                    "Winners run toward pressure. Losers run from it. Run toward it.",
+                    "You don't have to win every battle. You have to win the war. Pick your battles.",
+                    "Celebrate the win, then get back to work. The next win is already waiting.",
+                    "Nobody remembers who came in second. Be first.",
+                    "When you win, win big. Don't sneak across the line. Blow the doors off.",
+                    "The only poll that matters is the one on election day. Or the one at the closing bell.",
+                    "Winning takes team. Pick a great team. Then lead them to win.",
+                    "The comeback is always possible. Don't let one loss define you.",
+                    "Momentum is real. Build it with small wins. Then go for the big one.",
+                    "Winners write the history. So win. Then tell the story.",
+                    "The only way to guarantee a loss is to not show up. Show up.",
+                    "Champions adjust. When the game changes, you change. Fast.",
+                    "Pressure is a privilege. It means you're in the game.",
+                    "The scoreboard is the only judge. Everything else is opinion.",
+                    "Winning once is luck. Winning again is habit. Build the habit.",
+                    "Your opponents want you to doubt yourself. Don't give them that.",
+                    "The last round is the one that counts. Save something for the end.",
+                    "Winners don't celebrate too early. They finish. Then they celebrate.",
+                    "When you're behind, you need one big play. Stay ready for it.",
+                    "The best teams expect to win. Expect it. Then make it happen.",
+                    "Losing is data. Learn from it. Then win next time."
+                ));
+                byCategory.put(CategoryHint.MONEY, Arrays.asList(
+                    "Money is a measure. It tells you you're doing something right. Think scale. Think huge.",
+                    "You don't get rich playing safe. You get rich by seeing what others miss and moving fast.",
+                    "The best investment is in yourself. Build your brand. Build your name. Then the money follows.",
+                    "Cash flow is king. Always know your numbers. Always have options.",
+                    "When others are scared, that's when you look. The best deals happen when everyone else is running.",
+                    "Don't work for money. Make money work for you. Assets, leverage, brand.",
+                    "Billion isn't a ceiling. It's a floor. Think bigger.",
+                    "Profit isn't greedy. It's proof. Proof that you're creating value.",
+                    "The rich get richer because they think different. They see opportunity where others see risk.",
+                    "Never risk what you can't afford to lose. But don't sit on the sidelines either. Smart and bold.",
+                    "Debt is a tool. Use it when it buys you something that pays back more. Don't use it for lifestyle.",
+                    "Diversify enough to sleep at night. Concentrate enough to get rich.",
+                    "The best money you'll ever make is the deal you don't do. Know when to walk.",
+                    "Pay your people well. Cheap labor costs you more in the long run.",
+                    "Revenue is vanity. Profit is sanity. Cash is reality. Watch all three.",
+                    "Taxes are a cost of doing business. Plan for them. Don't let them plan you.",
+                    "When the market gives you a gift, take it. Don't wait for a better gift.",
+                    "Own assets that appreciate. Lease assets that depreciate. Simple.",
+                    "The first million is the hardest. After that you know the game.",
+                    "Never mix friendship and money without a contract. Ever.",
+                    "Compound growth is the eighth wonder. Start early. Reinvest.",
+                    "Liquidity is optional until it isn't. Always have an exit plan.",
+                    "The market can stay irrational longer than you can stay solvent. Size accordingly.",
+                    "Fees compound against you. Negotiate them down or find another way.",
+                    "Revenue is a vanity metric if margins don't work. Focus on unit economics.",
+                    "The best investment is the one you understand. Don't chase what you don't get.",
+                    "When everyone is greedy, be fearful. When everyone is fearful, be greedy.",
+                    "Cash reserves buy you options. Build them when times are good.",
+                    "Diversification is protection against ignorance. But don't over-diversify into mediocrity.",
+                    "The first loss is the best loss. Cut it and move on.",
+                    "Profitability beats growth when growth isn't profitable. Know the difference.",
+                    "Credit is a tool. Use it to build assets. Not to fund lifestyle.",
+                    "The best money you'll spend is on good advice. Get the best advisors.",
+                    "Wealth is what you don't spend. Build the habit of saving and investing."
+                ));
+                byCategory.put(CategoryHint.LEADERSHIP, Arrays.asList(
+                    "A leader doesn't wait for permission. He leads. People follow strength.",
+                    "You need a vision. A big one. Then you sell it. Over and over until it's real.",
+                    "The best leaders are decisive. They don't flip-flop. They decide and move.",
+                    "Surround yourself with the best. Then take responsibility when it matters. That's leadership.",
+                    "People want someone who says what they're thinking. Say it. Loud and clear.",
+                    "Leadership is about making the call when nobody else will. Make the call.",
+                    "You don't lead by committee. You lead by leading. One vision, one direction.",
+                    "When things go wrong, the leader takes the heat. When they go right, share the credit. That's how you keep people.",
+                    "Strong leaders attract strong people. Be strong. The rest follows.",
+                    "Never apologize for being strong. Weakness is what gets you replaced.",
+                    "Set the tone from the top. If you're early, they're early. If you're focused, they're focused.",
+                    "Listen to dissent. Then decide. The decision is yours.",
+                    "A leader's job is to simplify. One priority. One message. Repeat.",
+                    "Take the blame publicly. Fix the problem privately. That's how you keep trust.",
+                    "Don't lead by email. Lead by presence. Show up.",
+                    "Fire fast when someone doesn't fit. Keeping the wrong person hurts everyone.",
+                    "Reward results, not effort. Effort is the minimum. Results are the standard.",
+                    "Your calendar is your strategy. What you spend time on is what you care about.",
+                    "Underpromise and overdeliver. Or just deliver. Never overpromise and underdeliver.",
+                    "The best leaders make more leaders. Build your bench.",
+                    "Clarity of mission beats complexity of strategy. One mission. Everyone aligned.",
+                    "Decisiveness is a feature. Indecision is a bug. Fix it.",
+                    "Your team reflects you. If they're not performing, look in the mirror first.",
+                    "Communication is 90% of leadership. Over-communicate. Then communicate again.",
+                    "The vision has to be simple enough to fit on a bumper sticker. Simplify.",
+                    "Accountability starts at the top. Take it. Then demand it from others.",
+                    "Culture eats strategy for breakfast. Build the culture first.",
+                    "The best leaders are the best learners. Stay curious. Stay humble where it matters.",
+                    "Transparency builds trust. Share the good and the bad. People can handle truth.",
+                    "Empower your people. Then hold them accountable. Both matter.",
+                    "The leader sets the pace. If you're slow, they're slow. Speed up.",
+                    "Mistakes happen. The best leaders admit them fast and fix them faster.",
+                    "Your calendar is your priorities. If it's not on the calendar, it's not a priority.",
+                    "Leadership is lonely sometimes. Get used to it. The buck stops with you."
+                ));
+                byCategory.put(CategoryHint.OPPONENT, Arrays.asList(
+                    "When they come at you, you don't back down. You come back harder. They're not used to it.",
+                    "Name the problem. Don't be vague. When you name them, they can't hide.",
+                    "The best defense is a good offense. Hit first. Hit hard. Then they're playing your game.",
+                    "Never let them set the frame. You set the frame. You're the winner; they're the loser. Repeat it.",
+                    "They want you to get distracted. Don't. Stay on message. Crush them on the issues.",
+                    "When they go low, you don't go high. You go to the mat. And you win.",
+                    "Your opponents are counting on you to quit. Don't give them the satisfaction.",
+                    "Expose them. When people see what they really are, they lose. Show the truth.",
+                    "Fight with facts and force. Don't whine. Win.",
+                    "The crooked ones can't stand the light. Shine it. They'll run.",
+                    "One strong counterpunch beats a dozen weak jabs. Pick your shot and land it.",
+                    "They'll try to make it personal. Keep it about the issue. You win on the issue.",
+                    "When they're on the ropes, don't let up. Finish.",
+                    "Document everything. When they lie, you have the proof. Use it.",
+                    "Don't waste time on people who don't matter. Focus on the real opponent.",
+                    "Let them talk. The more they talk, the more rope they give you.",
+                    "Your supporters want to see you fight. So fight. But fight to win.",
+                    "Never let them define you. You define you. Repeat your story until it sticks.",
+                    "When they attack your strength, double down. That's where they're scared.",
+                    "The goal isn't to make them like you. The goal is to win. Remember that."
+                ));
+                byCategory.put(CategoryHint.TRUTH, Arrays.asList(
+                    "The truth is powerful. When you say the truth, people feel it. Use it.",
+                    "Don't let them label the truth as something else. Call it what it is. Truth.",
+                    "A lot of people can't handle the truth. Say it anyway. The ones who matter will listen.",
+                    "Fake news survives when nobody pushes back. Push back. With facts.",
+                    "When you're right, you're right. Don't soften it to make someone comfortable.",
+                    "The truth doesn't need a spin. It needs a megaphone. Give it one.",
+                    "Believe in what you know. If you've done the work, you know. Stand on it.",
+                    "They'll call the truth a lie. Keep saying it. Repetition wins.",
+                    "One clear truth beats a thousand muddy lies. Be clear.",
+                    "The truth might not win the first round. But it wins the fight. Stay with it.",
+                    "Get the documents. The truth is usually in the documents.",
+                    "When you're wrong, say it fast. Then move on. Dragging it out kills trust.",
+                    "Don't exaggerate. The truth is strong enough. Exaggeration gives them an opening.",
+                    "Sources matter. When you have the receipts, you have the power.",
+                    "The other side will spin. Your job is to state the truth so clearly that spin fails.",
+                    "Truth and timing aren't the same. Sometimes you wait for the right moment to say it.",
+                    "Never let them make you defensive about the truth. You're not defending; you're stating.",
+                    "One lie exposed destroys a hundred lies they told. Expose the one.",
+                    "The truth doesn't care about feelings. Say it with respect, but say it.",
+                    "When in doubt, check the record. The record doesn't lie."
+                ));
+                byCategory.put(CategoryHint.PEOPLE, Arrays.asList(
+                    "The people are smart. They get it. You don't need to dumb it down—just say it clear.",
+                    "Nobody has crowds like we have. When you have the people, you have everything.",
+                    "Listen to the base. They're the ones who show up. They're the ones who matter.",
+                    "You win when you speak for the forgotten. They remember who remembered them.",
+                    "Huge crowds don't lie. When people show up, they're sending a message. Read it.",
+                    "The elite don't get it. The people in the heartland get it. Talk to them.",
+                    "Support isn't given. It's earned. You earn it by being real and fighting for them.",
+                    "When the people are with you, the critics don't matter. Build that base.",
+                    "Love is a strong word. But when they love you, they'll move mountains for you. Earn it.",
+                    "The silent majority isn't silent when you give them a voice. Be that voice.",
+                    "Meet people where they are. Don't expect them to come to you first.",
+                    "Every voter has a story. When you listen, you learn what they really care about.",
+                    "Enthusiasm beats numbers sometimes. A fired-up base beats a lukewarm majority.",
+                    "Thank the people who work for you. In public. They never forget it.",
+                    "The crowd tells you what's working. If they're quiet, change the message.",
+                    "Never take your supporters for granted. They can leave. Give them a reason to stay.",
+                    "One-on-one matters. Shake hands. Look people in the eye. It still works.",
+                    "When people are hurting, acknowledge it. Then offer a solution. That's leadership.",
+                    "Your team is your family. Protect them. They'll protect you.",
+                    "The people who hate you were never going to vote for you. Focus on the ones who might."
+                ));
+                byCategory.put(CategoryHint.ADVICE, Arrays.asList(
+                    "What would I do? I'd do the bold thing. The thing that scares the consultants. That's usually the right move.",
+                    "Don't overthink it. Get the best people. Make a decision. Execute. Repeat.",
+                    "If you're going to do it, do it big. Half measures get half results.",
+                    "Protect your brand. Your name is everything. Don't let anyone drag it through the mud.",
+                    "Stay on offense. The minute you're playing defense, you're losing. Keep pushing.",
+                    "Get the best advice, then trust your gut. You know more than they think you know.",
+                    "Never show desperation. Even when you need the deal, act like you don't. That's when you get it.",
+                    "Think long term. Short-term wins that burn your reputation aren't wins.",
+                    "When in doubt, go bigger. Nobody ever regretted thinking too big. They regret thinking too small.",
+                    "Be yourself. The version that wins is the one that's real. People spot fake.",
+                    "Sleep on the big decisions. If you still want to do it in the morning, do it.",
+                    "Never sign something you haven't read. Every time. No exceptions.",
+                    "Return the call. The people who get to the top return the call.",
+                    "Dress like you're going somewhere. You are. Act like it.",
+                    "Read the room. If the room isn't with you, change the room or change the message.",
+                    "One good idea executed beats ten great ideas in a drawer. Execute.",
+                    "When someone does you a favor, remember. When you do someone a favor, forget. That's how you build loyalty.",
+                    "Don't burn bridges. You never know when you'll need to cross that river again.",
+                    "The best time to fix a problem is before it's a crisis. Pay attention early.",
+                    "Say thank you. In writing. It takes a minute and people remember forever."
+                ));
+                byCategory.put(CategoryHint.GENERIC, Arrays.asList(
+                    "You've got to think different. The same old approach gets the same old results.",
+                    "Nobody succeeds by playing it safe. Take the shot. The worst that happens is you learn.",
+                    "Confidence is everything. When you believe it, they start to believe it too.",
+                    "The system is rigged for the insiders. You beat it by being better and louder.",
+                    "Don't wait for the perfect moment. The moment is now. Act.",
+                    "Winners focus on winning. Losers focus on winners. Stay focused.",
+                    "You're going to get criticized no matter what. So do what you know is right.",
+                    "Energy and persistence beat talent when talent doesn't show up. Show up.",
+                    "Make your own luck. Luck is when preparation meets opportunity. Prepare. Then grab it.",
+                    "America—and life—rewards the bold. Be bold.",
+                    "Every expert was once a beginner. Start. Then keep going.",
+                    "The only way to lose for sure is to never try. Try.",
+                    "Your competition is working. So work harder. Or work smarter. Ideally both.",
+                    "Reputation is built in years and lost in minutes. Guard it.",
+                    "When the door closes, look for the window. There's always a way.",
+                    "Don't let yesterday use up today. Learn and move.",
+                    "The best revenge is massive success. Focus on that.",
+                    "You don't get what you deserve. You get what you negotiate. So negotiate.",
+                    "Stay hungry. The minute you get comfortable, someone passes you.",
+                    "Believe in something. Stand for something. People follow conviction.",
+                    "The moment you hesitate is the moment you lose. Decide and act.",
+                    "Great things happen when you stop asking for permission and start producing results.",
+                    "Your brand is your bond. Protect it with everything you've got.",
+                    "When the room is against you, change the room or change the argument.",
+                    "Never let a good crisis go to waste. Use it to make the changes that matter.",
+                    "The best way to predict the future is to create it. So create it.",
+                    "Speed matters. The first mover often wins. Move.",
+                    "Don't complain about the game. Change the game. Or win the game.",
+                    "History remembers the bold. It forgets the cautious. Be bold.",
+                    "When everybody zigs, you zag. That's how you stand out.",
+                    "The only failure is not trying. Everything else is data.",
+                    "Surround yourself with people who tell you the truth. Then make the call yourself.",
+                    "Your word is your bond. If you say it, do it. Every time.",
+                    "The best time to start was yesterday. The second best time is now."
+                ));
+                return byCategory;
+            }
+        }
+
+        List<String> forCategory(CategoryHint hint) {
+            List<String> list = Lines.BY_CATEGORY.get(hint);
+            return list != null ? list : genericOpeners;
+        }
+
+        /** A composed reply with {@code list} as the body pool; {@code keyword} fills the keyword slots if non-null. */
+        String compose(List<String> list, char[] keyword) {
+            if (list == null || list.isEmpty()) list = genericOpeners;
+            return composer.render(rng, genericOpeners, list, CLOSERS, keyword);
+        }
 
-    // --- Request context ---
-    private static final class RequestContext {
-        final String method;
-        final String path;
-        final String query;
-        final String body;
+        String pick(List<String> list) {
+            if (list == null || list.isEmpty()) return genericOpeners.get(rng.nextInt(genericOpeners.size()));
+            String base = list.get(rng.nextInt(list.size()));
+            if (rng.nextInt(4) == 0) base = base + CLOSERS.get(rng.nextInt(CLOSERS.size()));
+            return base;
+        }
 
-        RequestContext(String method, String path, String query, String body) {
-            this.method = method;
-            this.path = path;
-            this.query = query;
-            this.body = body;
+        String pickOneLiner() {
+            return OneLiners.ALL.get(rng.nextInt(OneLiners.ALL.size()));
         }
-    }
 
-    /** Immutable config: unique hex identifiers for this build only. */
-    private static final class TrumpSimConfig {
-        static final String CFG_NODE_A = "0xb3e8f1a2c5d7094e";
-        static final String CFG_NODE_B = "0x2f6a9d4c8e1b3075";
-        static final String CFG_SALT_HEX = "0x4d7c2e9f1a8b603d";
-        static final int MAX_INPUT_LEN = 2000;
-        static final int MAX_REPLY_LEN = 1500;
+        /** Only short inputs draw from these, so the list is built on first use rather than at boot. */
+        private static final class OneLiners {
+            static final List<String> ALL = Arrays.asList(
+                "Think big. Then go bigger.", "Winners don't quit. Period.",
+                "Get the best people. Then get out of their way.", "Stay on offense. Always.",
+                "The best deal is the one where you walk away happy.", "Never show desperation.",
+                "When they go low, you go to the mat.", "Truth wins. Eventually.",
+                "Protect your brand. It's everything.", "Confidence is contagious.",
+                "One strong move beats ten weak ones.", "Know your numbers. Always.",
+                "The people get it. The elite don't.", "Document everything.",
+                "When you're right, say it. Don't soften it.", "Energy and persistence.",
+                "Make the call. Don't wait for committee.", "Reputation takes years to build.",
+                "Hit back twice as hard. They can't take it.", "Options are leverage.",
+                "Say thank you. In writing.", "Read the room. Then lead the room.",
+                "The best revenge is massive success.", "Stay hungry. Never get comfortable.",
+                "One clear message. Repeat it until they hear it.", "Take the shot.",
+                "When in doubt, go bigger.", "Protect your team. They'll protect you.",
+                "The truth doesn't need a spin. It needs a megaphone.", "Finish what you start.",
+                "Walk away when the deal doesn't serve you.", "Control the narrative or someone else will.",
+                "Leverage beats effort. Get leverage.", "First in, first win. Move fast.",
+                "Never negotiate against yourself. Let them make the offer.",
+                "One tweet can change the story. Use it.", "Facts beat spin. Every time.",
+                "The crowd knows. Listen to the crowd.", "Decide. Then execute. No second-guessing.",
+                "Big league thinking wins. Small thinking loses.", "Your name on the door. Your standards.",
+                "When they attack, counterpunch. Hard.", "Cash flow is oxygen. Protect it.",
+                "Trust your gut. Then verify with data.", "Winning is a habit. Build the habit.",
+                "Don't explain. Don't apologize. State and move.", "The base is everything. Protect the base.",
+                "Expose the lie. Then move on.", "One priority. One message. Repeat.",
+                "Take the blame. Share the credit. That's leadership.", "No drama. Just results.",
+                "The best defense is a great offense.", "Stay focused. The rest is noise.",
+                "When you have the facts, you have the power.", "Be bold. The bold get remembered."
+            );
+        }
     }
 
-    /** Sanitizes user input for safe handling. */
-    private static final class InputSanitizer {
-        static String apply(String raw) {
-            if (raw == null) return "";
-            String s = raw.trim();
-            if (s.length() > TrumpSimConfig.MAX_INPUT_LEN) s = s.substring(0, TrumpSimConfig.MAX_INPUT_LEN);
-            return s.replace("\u0000", "");
+    // ========== HTTP/2 cleartext (h2c) ==========
+
+    /**
+     * One h2c connection, entered by prior knowledge or an HTTP/1.1 {@code Upgrade: h2c}. The accepting thread
+     * reads frames; every complete request stream goes through {@link #handle} on the server executor, so many
+     * streams are served concurrently over the one socket. Frames are written under {@code writeLock}, and DATA
+     * waits on the peer's connection and stream windows.
+     */
+    private static final class Http2Connection {
+        static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        static final byte[] SWITCHING_PROTOCOLS =
+            "HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        private static final int DATA = 0, HEADERS = 1, RST_STREAM = 3, SETTINGS = 4, PUSH_PROMISE = 5, PING = 6,
+            GOAWAY = 7, WINDOW_UPDATE = 8, CONTINUATION = 9;
+        private static final int END_STREAM = 0x1, ACK = 0x1, END_HEADERS = 0x4, PADDED = 0x8, PRIORITY = 0x20;
+        private static final int PROTOCOL_ERROR = 0x1, INTERNAL_ERROR = 0x2, FLOW_CONTROL_ERROR = 0x3,
+            STREAM_CLOSED = 0x5, FRAME_SIZE_ERROR = 0x6, REFUSED_STREAM = 0x7, CANCEL = 0x8, ENHANCE_YOUR_CALM = 0xb;
+        static final int COMPRESSION_ERROR = 0x9;
+        private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3, SETTINGS_INITIAL_WINDOW_SIZE = 0x4,
+            SETTINGS_MAX_FRAME_SIZE = 0x5, SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+        private static final int DEFAULT_WINDOW = 65535;
+        private static final int MAX_FRAME = 16384;
+        private static final int MAX_STREAMS = 100;
+        private static final int MAX_BODY = 64 * 1024;
+        /** Advertised decoded header list limit; the encoded block (HEADERS plus CONTINUATION) gets the same cap. */
+        private static final int MAX_HEADER_LIST = 16 * 1024;
+        private static final long DRAIN_MILLIS = 5000;
+        /** How long DATA may wait for the peer to open a window before the stream is cancelled. */
+        private static final long SEND_STALL_MILLIS = 10_000;
+        private static final byte[] EMPTY = new byte[0];
+
+        private final TrumpSim server;
+        /** Session key for streams without X-Session-Id; see {@link TrumpSim#peerOf}. */
+        private final String peer;
+        private final boolean local;
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final Object writeLock = new Object();
+        private final byte[] readHead = new byte[9];
+        private final byte[] writeHead = new byte[9];
+        private final Hpack.Decoder decoder = new Hpack.Decoder();
+        private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+        private int lastStreamId;
+        private Stream continuing;
+        // Send-side flow control and peer settings; guarded by this.
+        private long connectionWindow = DEFAULT_WINDOW;
+        private int initialWindow = DEFAULT_WINDOW;
+        private int peerMaxFrame = MAX_FRAME;
+        private boolean closed;
+
+        Http2Connection(TrumpSim server, String peer, boolean local, InputStream in, OutputStream out) {
+            this.server = server;
+            this.peer = peer;
+            this.local = local;
+            this.in = new DataInputStream(new BufferedInputStream(in, MAX_FRAME + 9));
+            this.out = new BufferedOutputStream(out, MAX_FRAME + 9);
         }
-    }
 
-    /** Optional in-memory session; no PII persisted. */
-    private static final class SessionHistory {
-        private static final int CAP = 50;
-        private final Deque<String> recent = new LinkedList<>();
+        static boolean isUpgrade(RequestContext ctx) {
+            String upgrade = ctx.headers.get("upgrade");
+            return upgrade != null && upgrade.toLowerCase().contains("h2c") && ctx.headers.containsKey("http2-settings");
+        }
 
-        void push(String query) {
-            recent.addFirst(InputSanitizer.apply(query));
-            while (recent.size() > CAP) recent.removeLast();
+        /** Serves the connection until the peer goes away; {@code upgraded} is the HTTP/1.1 request that becomes stream 1. */
+        void serve(RequestContext upgraded) {
+            boolean graceful = false;
+            try {
+                byte[] settings = new byte[12];
+                putSetting(settings, 0, SETTINGS_MAX_CONCURRENT_STREAMS, MAX_STREAMS);
+                putSetting(settings, 6, SETTINGS_MAX_HEADER_LIST_SIZE, MAX_HEADER_LIST);
+                writeFrame(SETTINGS, 0, 0, settings, 0, settings.length);
+                if (upgraded != null) {
+                    try {
+                        applySettings(Base64.getUrlDecoder().decode(upgraded.headers.get("http2-settings").trim()));
+                    } catch (IllegalArgumentException e) {
+                        throw new Http2Error(PROTOCOL_ERROR);
+                    }
+                    Stream s = new Stream(1, initialWindow);
+                    lastStreamId = 1;
+                    streams.put(1, s);
+                    s.dispatched = true;
+                    submit(s, upgraded);
+                    byte[] preface = new byte[PREFACE.length];
+                    in.readFully(preface);
+                    if (!Arrays.equals(preface, PREFACE)) throw new Http2Error(PROTOCOL_ERROR);
+                }
+                while (readFrame()) { }
+                graceful = true;
+            } catch (Http2Error e) {
+                try { goAway(e.code); } catch (IOException ignored) { }
+            } catch (IOException e) {
+                // peer closed or reset
+            } finally {
+                synchronized (this) {
+                    long deadline = System.currentTimeMillis() + DRAIN_MILLIS;
+                    long left;
+                    while (graceful && !streams.isEmpty() && (left = deadline - System.currentTimeMillis()) > 0) {
+                        try { wait(left); } catch (InterruptedException e) { break; }
+                    }
+                    closed = true;
+                    notifyAll();
+                }
+            }
         }
 
-        int size() { return recent.size(); }
-    }
+        /** Reads and handles one frame; false on EOF or GOAWAY. */
+        private boolean readFrame() throws IOException {
+            int first = in.read();
+            if (first < 0) return false;
+            readHead[0] = (byte) first;
+            in.readFully(readHead, 1, 8);
+            int len = ((readHead[0] & 0xFF) << 16) | ((readHead[1] & 0xFF) << 8) | (readHead[2] & 0xFF);
+            int type = readHead[3] & 0xFF;
+            int flags = readHead[4] & 0xFF;
+            int sid = readInt(readHead, 5) & 0x7FFFFFFF;
+            if (len > MAX_FRAME) throw new Http2Error(FRAME_SIZE_ERROR);
+            byte[] p = len == 0 ? EMPTY : new byte[len];
+            in.readFully(p);
+            if (continuing != null && (type != CONTINUATION || sid != continuing.id)) throw new Http2Error(PROTOCOL_ERROR);
+            switch (type) {
+                case HEADERS: onHeaders(flags, sid, p); break;
+                case CONTINUATION: onContinuation(flags, sid, p); break;
+                case DATA: onData(flags, sid, p); break;
+                case SETTINGS: onSettings(flags, sid, p); break;
+                case PING:
+                    if (len != 8) throw new Http2Error(FRAME_SIZE_ERROR);
+                    if ((flags & ACK) == 0) writeFrame(PING, ACK, 0, p, 0, 8);
+                    break;
+                case WINDOW_UPDATE: onWindowUpdate(sid, p); break;
+                case RST_STREAM: {
+                    Stream s = streams.remove(sid);
+                    if (s != null) synchronized (this) { s.reset = true; notifyAll(); }
+                    break;
+                }
+                case GOAWAY: return false;
+                case PUSH_PROMISE: throw new Http2Error(PROTOCOL_ERROR);
+                default: break; // PRIORITY and unknown types are ignored
+            }
+            return true;
+        }
 
-    // ========== TrumpSim Engine ==========
-    private static final class TrumpSimEngine {
-        private static final long SEED = 0x5E7B9D1A3C4F6082L;
-        private final Random rng;
-        private final XenonResponseBank bank;
+        private void onHeaders(int flags, int sid, byte[] p) throws IOException {
+            if (sid == 0 || (sid & 1) == 0) throw new Http2Error(PROTOCOL_ERROR);
+            int off = 0;
+            int end = p.length;
+            if ((flags & PADDED) != 0) {
+                if (p.length == 0) throw new Http2Error(PROTOCOL_ERROR);
+                off = 1;
+                end -= p[0] & 0xFF;
+            }
+            if ((flags & PRIORITY) != 0) off += 5;
+            if (off > end) throw new Http2Error(PROTOCOL_ERROR);
+            Stream s = streams.get(sid);
+            if (s == null || s.endStream) {
+                boolean halfClosed = s != null;
+                s = new Stream(sid, initialWindowSize());
+                if (halfClosed || sid <= lastStreamId) {
+                    // Closed from the peer's side: the block is still decoded, then the stream alone is reset.
+                    s.closed = true;
+                } else {
+                    lastStreamId = sid;
+                    s.refused = streams.size() >= MAX_STREAMS;
+                    streams.put(sid, s);
+                }
+            }
+            appendHeaderBlock(s, p, off, end - off);
+            if ((flags & END_STREAM) != 0) s.endStream = true;
+            if ((flags & END_HEADERS) != 0) endHeaders(s);
+            else continuing = s;
+        }
 
-        TrumpSimEngine(XenonResponseBank bank) {
-            this.rng = new Random(SEED);
-            this.bank = bank;
+        private void onContinuation(int flags, int sid, byte[] p) throws IOException {
+            if (continuing == null) throw new Http2Error(PROTOCOL_ERROR);
+            appendHeaderBlock(continuing, p, 0, p.length);
+            if ((flags & END_HEADERS) != 0) endHeaders(continuing);
+        }
+
+        /** A block too big to buffer cannot be decoded, and skipping it would desync HPACK, so the connection goes. */
+        private static void appendHeaderBlock(Stream s, byte[] p, int off, int len) throws IOException {
+            if (s.headerBlock.size() + len > MAX_HEADER_LIST) throw new Http2Error(ENHANCE_YOUR_CALM);
+            s.headerBlock.write(p, off, len);
+        }
+
+        /** Decodes the completed block even for refused and closed streams, so the HPACK table stays in sync. */
+        private void endHeaders(Stream s) throws IOException {
+            continuing = null;
+            Map<String, String> headers = decoder.decode(s.headerBlock.toByteArray(), MAX_HEADER_LIST);
+            s.headerBlock.reset();
+            if (s.closed) {
+                resetStream(s.id, STREAM_CLOSED);
+                return;
+            }
+            if (headers == null) {
+                streams.remove(s.id);
+                s.dispatched = true;
+                rstStream(s.id, ENHANCE_YOUR_CALM);
+                return;
+            }
+            if (s.headers == null) s.headers = headers;
+            if (s.endStream && !s.dispatched) dispatch(s);
+        }
+
+        private void onData(int flags, int sid, byte[] p) throws IOException {
+            if (sid == 0) throw new Http2Error(PROTOCOL_ERROR);
+            int off = 0;
+            int end = p.length;
+            if ((flags & PADDED) != 0) {
+                if (p.length == 0) throw new Http2Error(PROTOCOL_ERROR);
+                off = 1;
+                end -= p[0] & 0xFF;
+                if (end < off) throw new Http2Error(PROTOCOL_ERROR);
+            }
+            boolean last = (flags & END_STREAM) != 0;
+            if (p.length > 0) {
+                windowUpdate(0, p.length);
+                if (!last) windowUpdate(sid, p.length);
+            }
+            Stream s = streams.get(sid);
+            if (s == null || s.dispatched || s.headers == null) return;
+            int room = MAX_BODY - s.body.size();
+            if (room > 0) s.body.write(p, off, Math.min(room, end - off));
+            if (last) {
+                s.endStream = true;
+                dispatch(s);
+            }
         }
 
-        private static final class KeywordExtractor {
-            private static final Set<String> DEAL_TERMS = new HashSet<>(Arrays.asList(
-                "deal", "negotiate", "contract", "merge", "acquisition", "leverage", "close", "terms", "agreement"
-            ));
-            private static final Set<String> MEDIA_TERMS = new HashSet<>(Arrays.asList(
-                "media", "press", "twitter", "news", "tweet", "interview", "headline", "coverage"
-            ));
-            private static final Set<String> WIN_TERMS = new HashSet<>(Arrays.asList(
-                "win", "lose", "winner", "loser", "beat", "best", "greatest", "victory", "champion"
-            ));
-            private static final Set<String> MONEY_TERMS = new HashSet<>(Arrays.asList(
-                "money", "profit", "rich", "wealth", "billion", "invest", "revenue", "cash", "asset"
-            ));
-            private static final Set<String> LEAD_TERMS = new HashSet<>(Arrays.asList(
-                "lead", "president", "america", "country", "nation", "govern", "policy"
-            ));
-            private static final Set<String> OPP_TERMS = new HashSet<>(Arrays.asList(
-                "enemy", "opponent", "fight", "attack", "crooked", "rival", "competitor"
-            ));
-            private static final Set<String> TRUTH_TERMS = new HashSet<>(Arrays.asList(
-                "truth", "fake", "lie", "wrong", "right", "believe", "fact", "real"
-            ));
-            private static final Set<String> PEOPLE_TERMS = new HashSet<>(Arrays.asList(
-                "people", "crowd", "support", "love", "huge", "base", "voter", "citizen"
-            ));
-            private static final Set<String> ADVICE_TERMS = new HashSet<>(Arrays.asList(
-                "advice", "should", "what would", "how do", "how to", "recommend", "suggest"
-            ));
+        private void onSettings(int flags, int sid, byte[] p) throws IOException {
+            if (sid != 0) throw new Http2Error(PROTOCOL_ERROR);
+            if ((flags & ACK) != 0) return;
+            if (p.length % 6 != 0) throw new Http2Error(FRAME_SIZE_ERROR);
+            applySettings(p);
+            writeFrame(SETTINGS, ACK, 0, EMPTY, 0, 0);
+        }
 
-            static int scoreCategory(String text, Set<String> terms) {
-                if (text == null || terms == null) return 0;
-                String[] words = text.toLowerCase().split("\\W+");
-                int score = 0;
-                for (String w : words) {
-                    if (terms.contains(w)) score++;
-                    for (String t : terms) if (w.contains(t) || t.contains(w)) score++;
+        private void applySettings(byte[] p) throws IOException {
+            for (int i = 0; i + 6 <= p.length; i += 6) {
+                int id = ((p[i] & 0xFF) << 8) | (p[i + 1] & 0xFF);
+                long value = readInt(p, i + 2) & 0xFFFFFFFFL;
+                if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                    if (value > Integer.MAX_VALUE) throw new Http2Error(FLOW_CONTROL_ERROR);
+                    synchronized (this) {
+                        long delta = value - initialWindow;
+                        initialWindow = (int) value;
+                        for (Stream s : streams.values()) {
+                            s.window += delta;
+                            if (s.window > Integer.MAX_VALUE) throw new Http2Error(FLOW_CONTROL_ERROR);
+                        }
+                        notifyAll();
+                    }
+                } else if (id == SETTINGS_MAX_FRAME_SIZE) {
+                    if (value < MAX_FRAME || value > 0xFFFFFF) throw new Http2Error(PROTOCOL_ERROR);
+                    synchronized (this) { peerMaxFrame = (int) value; }
                 }
-                return score;
             }
+        }
 
-            static boolean hasDealKeyword(String t) {
-                return t != null && (t.contains("deal") || t.contains("negotiat") || t.contains("contract"));
+        private void onWindowUpdate(int sid, byte[] p) throws IOException {
+            if (p.length != 4) throw new Http2Error(FRAME_SIZE_ERROR);
+            int increment = readInt(p, 0) & 0x7FFFFFFF;
+            if (increment == 0) {
+                if (sid == 0) throw new Http2Error(PROTOCOL_ERROR);
+                resetStream(sid, PROTOCOL_ERROR);
+                return;
             }
-            static boolean hasMediaKeyword(String t) {
-                return t != null && (t.contains("media") || t.contains("press") || t.contains("tweet"));
+            boolean overflow = false;
+            synchronized (this) {
+                if (sid == 0) {
+                    connectionWindow += increment;
+                    if (connectionWindow > Integer.MAX_VALUE) throw new Http2Error(FLOW_CONTROL_ERROR);
+                } else {
+                    Stream s = streams.get(sid);
+                    if (s != null) {
+                        s.window += increment;
+                        overflow = s.window > Integer.MAX_VALUE;
+                    }
+                }
+                notifyAll();
             }
-            static boolean hasWinKeyword(String t) {
-                return t != null && (t.contains("win") || t.contains("winner") || t.contains("beat"));
+            if (overflow) resetStream(sid, FLOW_CONTROL_ERROR);
+        }
+
+        /** Stream error: stops any response in progress on {@code sid} and sends RST_STREAM. */
+        private void resetStream(int sid, int code) throws IOException {
+            Stream s = streams.remove(sid);
+            if (s != null) synchronized (this) { s.reset = true; notifyAll(); }
+            rstStream(sid, code);
+        }
+
+        private void dispatch(Stream s) throws IOException {
+            Flight.RequestParsed parsed = Flight.parsing();
+            s.dispatched = true;
+            if (s.refused) {
+                streams.remove(s.id);
+                rstStream(s.id, REFUSED_STREAM);
+                return;
             }
-            static boolean hasMoneyKeyword(String t) {
-                return t != null && (t.contains("money") || t.contains("profit") || t.contains("billion"));
+            Map<String, String> h = s.headers;
+            String method = h.getOrDefault(":method", "GET");
+            String target = h.getOrDefault(":path", "/");
+            int q = target.indexOf('?');
+            String path = q >= 0 ? target.substring(0, q) : target;
+            String query = q >= 0 ? target.substring(q + 1) : "";
+            String body = "POST".equalsIgnoreCase(method) ? new String(s.body.toByteArray(), StandardCharsets.UTF_8).trim() : null;
+            String session = h.get("x-session-id");
+            if (session == null) session = peer;
+            RequestContext ctx = new RequestContext(method, path, query, body, session, h, s.openedNanos, local);
+            Flight.parsed(parsed, ctx, 0);
+            submit(s, ctx);
+        }
+
+        private void submit(Stream s, RequestContext ctx) throws IOException {
+            try {
+                server.executor.execute(() -> serve(s, ctx));
+            } catch (RejectedExecutionException e) {
+                streams.remove(s.id);
+                rstStream(s.id, REFUSED_STREAM);
             }
-            static boolean hasLeadKeyword(String t) {
-                return t != null && (t.contains("lead") || t.contains("president") || t.contains("america"));
+        }
+
+        private void serve(Stream s, RequestContext ctx) {
+            try {
+                byte[] body = server.handle(ctx);
+                Flight.ResponseWritten written = Flight.writing();
+                respond(s, ctx, body);
+                Flight.written(written, ctx, body, "HTTP/2");
+            } catch (Exception e) {
+                try { rstStream(s.id, INTERNAL_ERROR); } catch (IOException ignored) { }
+            } finally {
+                streams.remove(s.id);
+                synchronized (this) { notifyAll(); }
             }
-            static boolean hasOppKeyword(String t) {
-                return t != null && (t.contains("enemy") || t.contains("opponent") || t.contains("fight"));
+        }
+
+        /**
+         * Writes HEADERS then DATA in chunks no larger than the peer's frame size and open windows; a stream whose
+         * window stays shut for {@link #SEND_STALL_MILLIS} is cancelled rather than holding this thread.
+         */
+        private void respond(Stream s, RequestContext ctx, byte[] body) throws IOException, InterruptedException {
+            int status = 200;
+            String retryAfter = null;
+            if (body.length > 12 && startsWith(body, "HTTP/1.1 ")) {
+                status = Integer.parseInt(new String(body, 9, 3, StandardCharsets.US_ASCII));
+                retryAfter = rawHeader(body, "Retry-After");
+                body = EMPTY;
             }
-            static boolean hasTruthKeyword(String t) {
-                return t != null && (t.contains("truth") || t.contains("fake") || t.contains("lie"));
+            boolean headOnly = body.length == 0 || "HEAD".equalsIgnoreCase(ctx.method);
+            ByteArrayOutputStream block = new ByteArrayOutputStream(64);
+            Hpack.status(block, status);
+            if (retryAfter != null) Hpack.literal(block, Hpack.RETRY_AFTER, retryAfter);
+            if (body.length > 0) Hpack.literal(block, Hpack.CONTENT_TYPE, contentTypeOf(body));
+            Hpack.literal(block, Hpack.CONTENT_LENGTH, Integer.toString(body.length));
+            writeFrame(HEADERS, END_HEADERS | (headOnly ? END_STREAM : 0), s.id, block.toByteArray(), 0, block.size());
+            if (headOnly) return;
+            int off = 0;
+            while (off < body.length) {
+                int n;
+                synchronized (this) {
+                    long deadline = System.currentTimeMillis() + SEND_STALL_MILLIS;
+                    long left = SEND_STALL_MILLIS;
+                    while (!closed && !s.reset && (connectionWindow <= 0 || s.window <= 0) && left > 0) {
+                        wait(left);
+                        left = deadline - System.currentTimeMillis();
+                    }
+                    if (closed || s.reset) return;
+                    n = (int) Math.min(Math.min(body.length - off, peerMaxFrame), Math.min(connectionWindow, s.window));
+                    if (n > 0) {
+                        connectionWindow -= n;
+                        s.window -= n;
+                    }
+                }
+                if (n <= 0) {
+                    resetStream(s.id, CANCEL);
+                    return;
+                }
+                writeFrame(DATA, off + n == body.length ? END_STREAM : 0, s.id, body, off, n);
+                off += n;
             }
-            static boolean hasPeopleKeyword(String t) {
-                return t != null && (t.contains("people") || t.contains("crowd") || t.contains("support"));
+        }
+
+        /** Value of {@code name} in a raw HTTP/1.1 response head, or null. */
+        private static String rawHeader(byte[] raw, String name) {
+            String head = new String(raw, StandardCharsets.US_ASCII);
+            int end = head.indexOf("\r\n\r\n");
+            int line = head.indexOf("\r\n") + 2;
+            while (line > 1 && line < end + 2) {
+                int next = head.indexOf("\r\n", line);
+                if (next - line > name.length() && head.charAt(line + name.length()) == ':'
+                        && head.regionMatches(true, line, name, 0, name.length())) {
+                    return head.substring(line + name.length() + 1, next).trim();
+                }
+                line = next + 2;
             }
-            static boolean hasAdviceKeyword(String t) {
-                return t != null && (t.contains("advice") || t.contains("should") || t.contains("how to"));
+            return null;
+        }
+
+        private synchronized int initialWindowSize() {
+            return initialWindow;
+        }
+
+        private void windowUpdate(int sid, int increment) throws IOException {
+            byte[] p = new byte[4];
+            putInt(p, 0, increment);
+            writeFrame(WINDOW_UPDATE, 0, sid, p, 0, 4);
+        }
+
+        private void rstStream(int sid, int code) throws IOException {
+            byte[] p = new byte[4];
+            putInt(p, 0, code);
+            writeFrame(RST_STREAM, 0, sid, p, 0, 4);
+        }
+
+        private void goAway(int code) throws IOException {
+            byte[] p = new byte[8];
+            putInt(p, 0, lastStreamId);
+            putInt(p, 4, code);
+            writeFrame(GOAWAY, 0, 0, p, 0, 8);
+        }
+
+        private void writeFrame(int type, int flags, int sid, byte[] p, int off, int len) throws IOException {
+            synchronized (writeLock) {
+                writeHead[0] = (byte) (len >>> 16);
+                writeHead[1] = (byte) (len >>> 8);
+                writeHead[2] = (byte) len;
+                writeHead[3] = (byte) type;
+                writeHead[4] = (byte) flags;
+                putInt(writeHead, 5, sid);
+                out.write(writeHead);
+                out.write(p, off, len);
+                out.flush();
             }
         }
 
-        String respond(String input) {
-            input = InputSanitizer.apply(input);
-            String normalized = input.toLowerCase();
-            if (normalized.isEmpty()) return bank.pick(bank.genericOpeners);
-            if (normalized.length() <= 3) return bank.pickOneLiner();
-            CategoryHint hint = categorize(normalized);
-            List<String> pool = bank.forCategory(hint);
-            String reply = bank.pick(pool);
-            if (reply.length() > TrumpSimConfig.MAX_REPLY_LEN) reply = reply.substring(0, TrumpSimConfig.MAX_REPLY_LEN);
-            return reply;
+        private static void putSetting(byte[] p, int off, int id, int value) {
+            p[off] = (byte) (id >>> 8);
+            p[off + 1] = (byte) id;
+            putInt(p, off + 2, value);
         }
 
-        private CategoryHint categorize(String text) {
-            int deal = KeywordExtractor.scoreCategory(text, KeywordExtractor.DEAL_TERMS);
-            int media = KeywordExtractor.scoreCategory(text, KeywordExtractor.MEDIA_TERMS);
-            int win = KeywordExtractor.scoreCategory(text, KeywordExtractor.WIN_TERMS);
-            int money = KeywordExtractor.scoreCategory(text, KeywordExtractor.MONEY_TERMS);
-            int lead = KeywordExtractor.scoreCategory(text, KeywordExtractor.LEAD_TERMS);
-            int opp = KeywordExtractor.scoreCategory(text, KeywordExtractor.OPP_TERMS);
-            int truth = KeywordExtractor.scoreCategory(text, KeywordExtractor.TRUTH_TERMS);
-            int people = KeywordExtractor.scoreCategory(text, KeywordExtractor.PEOPLE_TERMS);
-            int advice = KeywordExtractor.scoreCategory(text, KeywordExtractor.ADVICE_TERMS);
-            int best = Math.max(Math.max(deal, media), Math.max(win, money));
-            best = Math.max(best, Math.max(Math.max(lead, opp), Math.max(Math.max(truth, people), advice)));
-            if (best == 0) return CategoryHint.GENERIC;
-            if (deal == best) return CategoryHint.DEAL;
-            if (media == best) return CategoryHint.MEDIA;
-            if (win == best) return CategoryHint.WINNING;
-            if (money == best) return CategoryHint.MONEY;
-            if (lead == best) return CategoryHint.LEADERSHIP;
-            if (opp == best) return CategoryHint.OPPONENT;
-            if (truth == best) return CategoryHint.TRUTH;
-            if (people == best) return CategoryHint.PEOPLE;
-            if (advice == best) return CategoryHint.ADVICE;
-            if (text.matches(".*\\b(deal|negotiat|contract|merge|acquisit)\\b.*")) return CategoryHint.DEAL;
-            if (text.matches(".*\\b(media|press|twitter|news|tweet)\\b.*")) return CategoryHint.MEDIA;
-            if (text.matches(".*\\b(win|lose|winner|loser|beat|best|greatest)\\b.*")) return CategoryHint.WINNING;
-            if (text.matches(".*\\b(money|profit|rich|wealth|billion|invest)\\b.*")) return CategoryHint.MONEY;
-            if (text.matches(".*\\b(lead|president|america|country|nation)\\b.*")) return CategoryHint.LEADERSHIP;
-            if (text.matches(".*\\b(enemy|opponent|fight|attack|crooked)\\b.*")) return CategoryHint.OPPONENT;
-            if (text.matches(".*\\b(truth|fake|lie|wrong|right|believe)\\b.*")) return CategoryHint.TRUTH;
-            if (text.matches(".*\\b(people|crowd|support|love|huge)\\b.*")) return CategoryHint.PEOPLE;
-            if (text.matches(".*\\b(advice|should|what would|how do|how to)\\b.*")) return CategoryHint.ADVICE;
-            return CategoryHint.GENERIC;
+        private static int readInt(byte[] b, int off) {
+            return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
         }
-    }
 
-    private enum CategoryHint {
-        DEAL, MEDIA, WINNING, MONEY, LEADERSHIP, OPPONENT, TRUTH, PEOPLE, ADVICE, GENERIC
+        private static void putInt(byte[] b, int off, int v) {
+            b[off] = (byte) (v >>> 24);
+            b[off + 1] = (byte) (v >>> 16);
+            b[off + 2] = (byte) (v >>> 8);
+            b[off + 3] = (byte) v;
+        }
+
+        private static boolean startsWith(byte[] b, String prefix) {
+            for (int i = 0; i < prefix.length(); i++) if (b[i] != prefix.charAt(i)) return false;
+            return true;
+        }
+
+        private static final class Stream {
+            final int id;
+            final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Map<String, String> headers;
+            boolean endStream;
+            boolean dispatched;
+            boolean refused;
+            /** HEADERS arrived after the peer ended the stream, or for an id at or below the last one opened. */
+            boolean closed;
+            // guarded by the connection
+            long window;
+            boolean reset;
+
+            /** When HEADERS first arrived; the request's arrival for the lane deadline. */
+            final long openedNanos = System.nanoTime();
+
+            Stream(int id, long window) {
+                this.id = id;
+                this.window = window;
+            }
+        }
     }
 
-    /** Extended phrase weights for scoring; unique token set for this build. */
-    private static final class PhraseWeights {
-        static final int WEIGHT_PRIMARY = 3;
-        static final int WEIGHT_SECONDARY = 1;
-        static final String TOKEN_PREFIX = "xenon:";
-        static final long WEIGHT_SEED = 0x9A4F2C8E1B7D5036L;
+    /** Connection error carrying an HTTP/2 error code for GOAWAY. */
+    private static final class Http2Error extends IOException {
+        private static final long serialVersionUID = 1L;
+        final int code;
+
+        Http2Error(int code) {
+            super("HTTP/2 error " + code);
+            this.code = code;
+        }
     }
 
-    // ========== Xenon Response Bank (unique phrases) ==========
-    private static final class XenonResponseBank {
-        private static final Random R = new Random(0x8F1E4A2B6C0D9E3AL);
-        private static final List<String> CLOSERS = Arrays.asList(
-            " Believe me.", " That's the way it is.", " Big league.",
-            " Nobody else will tell you this.", " We're going to do great.",
-            " You'll see.", " It's going to be huge.", " Trust me on this."
-        );
-        private final List<String> genericOpeners = Arrays.asList(
-            "Look, you've got to think big. Really big.",
-            "Nobody knows this better than me. Nobody.",
-            "Let me tell you something—and I say this with total certainty.",
-            "Here's the thing. The thing that a lot of people don't get.",
-            "I've seen it a thousand times. A thousand."
-        );
-        private static final List<String> ONE_LINER_FALLBACKS = Arrays.asList(
-            "Think big. Then go bigger.", "Winners don't quit. Period.",
-            "Get the best people. Then get out of their way.", "Stay on offense. Always.",
-            "The best deal is the one where you walk away happy.", "Never show desperation.",
-            "When they go low, you go to the mat.", "Truth wins. Eventually.",
-            "Protect your brand. It's everything.", "Confidence is contagious.",
-            "One strong move beats ten weak ones.", "Know your numbers. Always.",
-            "The people get it. The elite don't.", "Document everything.",
-            "When you're right, say it. Don't soften it.", "Energy and persistence.",
-            "Make the call. Don't wait for committee.", "Reputation takes years to build.",
-            "Hit back twice as hard. They can't take it.", "Options are leverage.",
-            "Say thank you. In writing.", "Read the room. Then lead the room.",
-            "The best revenge is massive success.", "Stay hungry. Never get comfortable.",
-            "One clear message. Repeat it until they hear it.", "Take the shot.",
-            "When in doubt, go bigger.", "Protect your team. They'll protect you.",
-            "The truth doesn't need a spin. It needs a megaphone.", "Finish what you start.",
-            "Walk away when the deal doesn't serve you.", "Control the narrative or someone else will.",
-            "Leverage beats effort. Get leverage.", "First in, first win. Move fast.",
-            "Never negotiate against yourself. Let them make the offer.",
-            "One tweet can change the story. Use it.", "Facts beat spin. Every time.",
-            "The crowd knows. Listen to the crowd.", "Decide. Then execute. No second-guessing.",
-            "Big league thinking wins. Small thinking loses.", "Your name on the door. Your standards.",
-            "When they attack, counterpunch. Hard.", "Cash flow is oxygen. Protect it.",
-            "Trust your gut. Then verify with data.", "Winning is a habit. Build the habit.",
-            "Don't explain. Don't apologize. State and move.", "The base is everything. Protect the base.",
-            "Expose the lie. Then move on.", "One priority. One message. Repeat.",
-            "Take the blame. Share the credit. That's leadership.", "No drama. Just results.",
-            "The best defense is a great offense.", "Stay focused. The rest is noise.",
-            "When you have the facts, you have the power.", "Be bold. The bold get remembered."
-        );
-        private final Map<CategoryHint, List<String>> byCategory = new EnumMap<>(CategoryHint.class);
+    /**
+     * HPACK (RFC 7541). Request header blocks are decoded with Huffman strings and a dynamic table; responses
+     * use static-table names with literal values only, so the peer's decoder table is never touched.
+     */
+    private static final class Hpack {
+        static final int TABLE_SIZE = 4096;
+        static final int CONTENT_LENGTH = 28;
+        static final int CONTENT_TYPE = 31;
+        static final int RETRY_AFTER = 53;
+        private static final String[][] STATIC = {
+            { ":authority", "" }, { ":method", "GET" }, { ":method", "POST" }, { ":path", "/" },
+            { ":path", "/index.html" }, { ":scheme", "http" }, { ":scheme", "https" }, { ":status", "200" },
+            { ":status", "204" }, { ":status", "206" }, { ":status", "304" }, { ":status", "400" },
+            { ":status", "404" }, { ":status", "500" }, { "accept-charset", "" }, { "accept-encoding", "gzip, deflate" },
+            { "accept-language", "" }, { "accept-ranges", "" }, { "accept", "" }, { "access-control-allow-origin", "" },
+            { "age", "" }, { "allow", "" }, { "authorization", "" }, { "cache-control", "" },
+            { "content-disposition", "" }, { "content-encoding", "" }, { "content-language", "" }, { "content-length", "" },
+            { "content-location", "" }, { "content-range", "" }, { "content-type", "" }, { "cookie", "" },
+            { "date", "" }, { "etag", "" }, { "expect", "" }, { "expires", "" },
+            { "from", "" }, { "host", "" }, { "if-match", "" }, { "if-modified-since", "" },
+            { "if-none-match", "" }, { "if-range", "" }, { "if-unmodified-since", "" }, { "last-modified", "" },
+            { "link", "" }, { "location", "" }, { "max-forwards", "" }, { "proxy-authenticate", "" },
+            { "proxy-authorization", "" }, { "range", "" }, { "referer", "" }, { "refresh", "" },
+            { "retry-after", "" }, { "server", "" }, { "set-cookie", "" }, { "strict-transport-security", "" },
+            { "transfer-encoding", "" }, { "user-agent", "" }, { "vary", "" }, { "via", "" },
+            { "www-authenticate", "" }
+        };
+        /** Huffman codes (right-aligned) and bit lengths for octets 0-255, RFC 7541 Appendix B. */
+        private static final int[] HUFFMAN_CODES = {
+            0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+            0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+            0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+            0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+            0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa,
+            0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+            0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d,
+            0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc,
+            0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+            0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a,
+            0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72,
+            0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+            0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+            0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7,
+            0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+            0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc,
+            0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+            0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+            0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3,
+            0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef,
+            0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+            0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+            0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef,
+            0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+            0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec,
+            0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+            0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+            0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5,
+            0xfffec, 0xfffff3, 0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3,
+            0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+            0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea,
+            0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee
+        };
+        private static final byte[] HUFFMAN_LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+            28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+            5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+            6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+            24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+            21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+            19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26
+        };
+        /** Binary trie: {@code TREE[node * 2 + bit]} is a child node (> 0), a leaf {@code ~symbol} (< 0), or 0. */
+        private static final int[] TREE = buildTree();
 
-        XenonResponseBank() {
-            byCategory.put(CategoryHint.DEAL, Arrays.asList(
-                "You go in strong. You never show weakness. The deal gets made when they need you more than you need them.",
-                "The best deals happen when the other guy thinks he's winning until the last second. Then you close. Beautiful.",
-                "Never take the first offer. Never. Let them sweat. Then you get what you want.",
-                "Deals are about leverage. Get leverage. Then you can do anything.",
-                "I've made deals my whole life. The key? Walk away. Be ready to walk. They always come back.",
-                "You've got to have options. When they know you've got options, the numbers move. Believe me.",
-                "The art of the deal is simple: know what you want, know what they want, and make them think they're winning until the ink is dry.",
-                "Never get emotional in a deal. Stay cool. Let them get emotional. That's when you win.",
-                "Big league negotiators don't blink first. You don't blink.",
-                "Always leave something on the table—something small. They feel good, you get the rest.",
-                "Timing is everything. Strike when they're eager. Don't strike when you're desperate.",
-                "Get everything in writing. Handshakes are for cameras. Paper is for courts.",
-                "The best deal is the one where both sides think they won. You just make sure you won more.",
-                "Never reveal your bottom line early. Make them work for every inch.",
-                "Use silence. After you make an offer, shut up. The next person who talks loses.",
-                "Know their deadline. If they need to close by Friday, don't move until Thursday.",
-                "Bring a closer. Sometimes you need someone to say the number so you can shrug.",
-                "Renegotiate when the facts change. A good deal today can be a bad deal tomorrow.",
-                "Never bad-mouth the other side in public. You might need them again.",
-                "Celebrate after the ink dries. Until then, act like you could walk any second.",
-                "Partnerships work when both sides need each other. Make sure you're not the only one who needs.",
-                "The closing is an art. Don't rush it. Let the silence do the work.",
-                "Counterparty risk is real. Know who you're dealing with before you sign.",
-                "Verbal agreements aren't worth the paper they're written on. Get it in writing.",
-                "The best negotiators are the best listeners. Listen first. Then speak.",
-                "Never let them see your deadline. Act like you have all the time in the world.",
-                "Multiple bidders change everything. Create competition when you can.",
-                "The deal you don't do is sometimes the best deal. Walk away when it's wrong.",
-                "Relationship matters after the deal. Don't burn the bridge at the closing.",
-                "Read every clause. The devil is in the details. Every time.",
-                "Renegotiation is always an option if the facts change. Build that in.",
-                "The other side has a boss too. Sometimes you need to go over their head.",
-                "Win-win is real when both sides feel they won. Get them there.",
-                "No deal is better than a bad deal. Remember that when the pressure is on."
-            ));
-            byCategory.put(CategoryHint.MEDIA, Arrays.asList(
-                "The media? You don't need them. You have your own platform. Use it. Direct to the people.",
-                "When they attack, you hit back harder. Twice as hard. They can't take it.",
-                "Don't explain. Don't apologize. State your case and move on. The real people get it.",
-                "Social media is the megaphone. You say it once, the whole world hears. Use it.",
-                "The press loves conflict. Give them a show—but on your terms. You control the narrative.",
-                "Never let them put words in your mouth. You say what you say. Clear and simple.",
-                "When they spin, you counter-spin. One tweet. Done. They spend a week reacting.",
-                "The best response to bad press is success. Win so big they have to cover it.",
-                "You don't need their permission to be heard. You need a phone and the truth.",
-                "They want a sound bite? Give them a sound bite. But make it unforgettable.",
-                "Headlines fade. Results last. Focus on results and the headlines will follow.",
-                "Don't chase every story. Let some die. Not everything deserves a response.",
-                "When you're winning, they'll try to change the subject. Keep the subject on winning.",
-                "Fact-check them back. They get one wrong, you put it on the record. Forever.",
-                "Your base doesn't get their news from the same place. Speak to your base directly.",
-                "Interviews are optional. You don't owe them access. Use it as leverage.",
-                "The more they repeat your name, the more you win. Even negative coverage is coverage.",
-                "Never do an interview without knowing the host. Know their angle before you sit down.",
-                "Leaks are for people who can't win in the open. Win in the open.",
-                "One strong statement beats ten corrections. Get it right the first time."
-            ));
-            byCategory.put(CategoryHint.WINNING, Arrays.asList(
-                "Winning isn't everything—it's the only thing. We're going to win so much you'll get tired of winning.",
-                "Losers quit. Winners find a way. You're a winner. Act like it.",
-                "Nobody wins by playing small. Think big. Then win big.",
-                "When you're winning, the critics get louder. That's how you know you're winning.",
-                "We're going to win in a way nobody has ever won before. Big league.",
-                "Winners don't make excuses. They make results. You want to be a winner? Produce.",
-                "The biggest wins come when everybody says it's impossible. Then you do it.",
-                "Winning is a habit. You build it one victory at a time. Start today.",
-                "Don't hope to win. Plan to win. Then execute. That's winning.",
-                "We're not here to participate. We're here to win. Period.",
-                "Every day you don't quit is a day you're still in the game. Stay in the game.",
-                "Small wins add up. Stack them. Then go for the big one.",
-                "The scoreboard doesn't lie. If you're not winning yet, change the playbook.",
-                "Winners run toward pressure. Losers run from it. Run toward it.",
-                "You don't have to win every battle. You have to win the war. Pick your battles.",
-                "Celebrate the win, then get back to work. The next win is already waiting.",
-                "Nobody remembers who came in second. Be first.",
-                "When you win, win big. Don't sneak across the line. Blow the doors off.",
-                "The only poll that matters is the one on election day. Or the one at the closing bell.",
-                "Winning takes team. Pick a great team. Then lead them to win.",
-                "The comeback is always possible. Don't let one loss define you.",
-                "Momentum is real. Build it with small wins. Then go for the big one.",
-                "Winners write the history. So win. Then tell the story.",
-                "The only way to guarantee a loss is to not show up. Show up.",
-                "Champions adjust. When the game changes, you change. Fast.",
-                "Pressure is a privilege. It means you're in the game.",
-                "The scoreboard is the only judge. Everything else is opinion.",
-                "Winning once is luck. Winning again is habit. Build the habit.",
-                "Your opponents want you to doubt yourself. Don't give them that.",
-                "The last round is the one that counts. Save something for the end.",
-                "Winners don't celebrate too early. They finish. Then they celebrate.",
-                "When you're behind, you need one big play. Stay ready for it.",
-                "The best teams expect to win. Expect it. Then make it happen.",
-                "Losing is data. Learn from it. Then win next time."
-            ));
-            byCategory.put(CategoryHint.MONEY, Arrays.asList(
-                "Money is a measure. It tells you you're doing something right. Think scale. Think huge.",
-                "You don't get rich playing safe. You get rich by seeing what others miss and moving fast.",
-                "The best investment is in yourself. Build your brand. Build your name. Then the money follows.",
-                "Cash flow is king. Always know your numbers. Always have options.",
-                "When others are scared, that's when you look. The best deals happen when everyone else is running.",
-                "Don't work for money. Make money work for you. Assets, leverage, brand.",
-                "Billion isn't a ceiling. It's a floor. Think bigger.",
-                "Profit isn't greedy. It's proof. Proof that you're creating value.",
-                "The rich get richer because they think different. They see opportunity where others see risk.",
-                "Never risk what you can't afford to lose. But don't sit on the sidelines either. Smart and bold.",
-                "Debt is a tool. Use it when it buys you something that pays back more. Don't use it for lifestyle.",
-                "Diversify enough to sleep at night. Concentrate enough to get rich.",
-                "The best money you'll ever make is the deal you don't do. Know when to walk.",
-                "Pay your people well. Cheap labor costs you more in the long run.",
-                "Revenue is vanity. Profit is sanity. Cash is reality. Watch all three.",
-                "Taxes are a cost of doing business. Plan for them. Don't let them plan you.",
-                "When the market gives you a gift, take it. Don't wait for a better gift.",
-                "Own assets that appreciate. Lease assets that depreciate. Simple.",
-                "The first million is the hardest. After that you know the game.",
-                "Never mix friendship and money without a contract. Ever.",
-                "Compound growth is the eighth wonder. Start early. Reinvest.",
-                "Liquidity is optional until it isn't. Always have an exit plan.",
-                "The market can stay irrational longer than you can stay solvent. Size accordingly.",
-                "Fees compound against you. Negotiate them down or find another way.",
-                "Revenue is a vanity metric if margins don't work. Focus on unit economics.",
-                "The best investment is the one you understand. Don't chase what you don't get.",
-                "When everyone is greedy, be fearful. When everyone is fearful, be greedy.",
-                "Cash reserves buy you options. Build them when times are good.",
-                "Diversification is protection against ignorance. But don't over-diversify into mediocrity.",
-                "The first loss is the best loss. Cut it and move on.",
-                "Profitability beats growth when growth isn't profitable. Know the difference.",
-                "Credit is a tool. Use it to build assets. Not to fund lifestyle.",
-                "The best money you'll spend is on good advice. Get the best advisors.",
-                "Wealth is what you don't spend. Build the habit of saving and investing."
-            ));
-            byCategory.put(CategoryHint.LEADERSHIP, Arrays.asList(
-                "A leader doesn't wait for permission. He leads. People follow strength.",
-                "You need a vision. A big one. Then you sell it. Over and over until it's real.",
-                "The best leaders are decisive. They don't flip-flop. They decide and move.",
-                "Surround yourself with the best. Then take responsibility when it matters. That's leadership.",
-                "People want someone who says what they're thinking. Say it. Loud and clear.",
-                "Leadership is about making the call when nobody else will. Make the call.",
-                "You don't lead by committee. You lead by leading. One vision, one direction.",
-                "When things go wrong, the leader takes the heat. When they go right, share the credit. That's how you keep people.",
-                "Strong leaders attract strong people. Be strong. The rest follows.",
-                "Never apologize for being strong. Weakness is what gets you replaced.",
-                "Set the tone from the top. If you're early, they're early. If you're focused, they're focused.",
-                "Listen to dissent. Then decide. The decision is yours.",
-                "A leader's job is to simplify. One priority. One message. Repeat.",
-                "Take the blame publicly. Fix the problem privately. That's how you keep trust.",
-                "Don't lead by email. Lead by presence. Show up.",
-                "Fire fast when someone doesn't fit. Keeping the wrong person hurts everyone.",
-                "Reward results, not effort. Effort is the minimum. Results are the standard.",
-                "Your calendar is your strategy. What you spend time on is what you care about.",
-                "Underpromise and overdeliver. Or just deliver. Never overpromise and underdeliver.",
-                "The best leaders make more leaders. Build your bench.",
-                "Clarity of mission beats complexity of strategy. One mission. Everyone aligned.",
-                "Decisiveness is a feature. Indecision is a bug. Fix it.",
-                "Your team reflects you. If they're not performing, look in the mirror first.",
-                "Communication is 90% of leadership. Over-communicate. Then communicate again.",
-                "The vision has to be simple enough to fit on a bumper sticker. Simplify.",
-                "Accountability starts at the top. Take it. Then demand it from others.",
-                "Culture eats strategy for breakfast. Build the culture first.",
-                "The best leaders are the best learners. Stay curious. Stay humble where it matters.",
-                "Transparency builds trust. Share the good and the bad. People can handle truth.",
-                "Empower your people. Then hold them accountable. Both matter.",
-                "The leader sets the pace. If you're slow, they're slow. Speed up.",
-                "Mistakes happen. The best leaders admit them fast and fix them faster.",
-                "Your calendar is your priorities. If it's not on the calendar, it's not a priority.",
-                "Leadership is lonely sometimes. Get used to it. The buck stops with you."
-            ));
-            byCategory.put(CategoryHint.OPPONENT, Arrays.asList(
-                "When they come at you, you don't back down. You come back harder. They're not used to it.",
-                "Name the problem. Don't be vague. When you name them, they can't hide.",
-                "The best defense is a good offense. Hit first. Hit hard. Then they're playing your game.",
-                "Never let them set the frame. You set the frame. You're the winner; they're the loser. Repeat it.",
-                "They want you to get distracted. Don't. Stay on message. Crush them on the issues.",
-                "When they go low, you don't go high. You go to the mat. And you win.",
-                "Your opponents are counting on you to quit. Don't give them the satisfaction.",
-                "Expose them. When people see what they really are, they lose. Show the truth.",
-                "Fight with facts and force. Don't whine. Win.",
-                "The crooked ones can't stand the light. Shine it. They'll run.",
-                "One strong counterpunch beats a dozen weak jabs. Pick your shot and land it.",
-                "They'll try to make it personal. Keep it about the issue. You win on the issue.",
-                "When they're on the ropes, don't let up. Finish.",
-                "Document everything. When they lie, you have the proof. Use it.",
-                "Don't waste time on people who don't matter. Focus on the real opponent.",
-                "Let them talk. The more they talk, the more rope they give you.",
-                "Your supporters want to see you fight. So fight. But fight to win.",
-                "Never let them define you. You define you. Repeat your story until it sticks.",
-                "When they attack your strength, double down. That's where they're scared.",
-                "The goal isn't to make them like you. The goal is to win. Remember that."
-            ));
-            byCategory.put(CategoryHint.TRUTH, Arrays.asList(
-                "The truth is powerful. When you say the truth, people feel it. Use it.",
-                "Don't let them label the truth as something else. Call it what it is. Truth.",
-                "A lot of people can't handle the truth. Say it anyway. The ones who matter will listen.",
-                "Fake news survives when nobody pushes back. Push back. With facts.",
-                "When you're right, you're right. Don't soften it to make someone comfortable.",
-                "The truth doesn't need a spin. It needs a megaphone. Give it one.",
-                "Believe in what you know. If you've done the work, you know. Stand on it.",
-                "They'll call the truth a lie. Keep saying it. Repetition wins.",
-                "One clear truth beats a thousand muddy lies. Be clear.",
-                "The truth might not win the first round. But it wins the fight. Stay with it.",
-                "Get the documents. The truth is usually in the documents.",
-                "When you're wrong, say it fast. Then move on. Dragging it out kills trust.",
-                "Don't exaggerate. The truth is strong enough. Exaggeration gives them an opening.",
-                "Sources matter. When you have the receipts, you have the power.",
-                "The other side will spin. Your job is to state the truth so clearly that spin fails.",
-                "Truth and timing aren't the same. Sometimes you wait for the right moment to say it.",
-                "Never let them make you defensive about the truth. You're not defending; you're stating.",
-                "One lie exposed destroys a hundred lies they told. Expose the one.",
-                "The truth doesn't care about feelings. Say it with respect, but say it.",
-                "When in doubt, check the record. The record doesn't lie."
-            ));
-            byCategory.put(CategoryHint.PEOPLE, Arrays.asList(
-                "The people are smart. They get it. You don't need to dumb it down—just say it clear.",
-                "Nobody has crowds like we have. When you have the people, you have everything.",
-                "Listen to the base. They're the ones who show up. They're the ones who matter.",
-                "You win when you speak for the forgotten. They remember who remembered them.",
-                "Huge crowds don't lie. When people show up, they're sending a message. Read it.",
-                "The elite don't get it. The people in the heartland get it. Talk to them.",
-                "Support isn't given. It's earned. You earn it by being real and fighting for them.",
-                "When the people are with you, the critics don't matter. Build that base.",
-                "Love is a strong word. But when they love you, they'll move mountains for you. Earn it.",
-                "The silent majority isn't silent when you give them a voice. Be that voice.",
-                "Meet people where they are. Don't expect them to come to you first.",
-                "Every voter has a story. When you listen, you learn what they really care about.",
-                "Enthusiasm beats numbers sometimes. A fired-up base beats a lukewarm majority.",
-                "Thank the people who work for you. In public. They never forget it.",
-                "The crowd tells you what's working. If they're quiet, change the message.",
-                "Never take your supporters for granted. They can leave. Give them a reason to stay.",
-                "One-on-one matters. Shake hands. Look people in the eye. It still works.",
-                "When people are hurting, acknowledge it. Then offer a solution. That's leadership.",
-                "Your team is your family. Protect them. They'll protect you.",
-                "The people who hate you were never going to vote for you. Focus on the ones who might."
-            ));
-            byCategory.put(CategoryHint.ADVICE, Arrays.asList(
-                "What would I do? I'd do the bold thing. The thing that scares the consultants. That's usually the right move.",
-                "Don't overthink it. Get the best people. Make a decision. Execute. Repeat.",
-                "If you're going to do it, do it big. Half measures get half results.",
-                "Protect your brand. Your name is everything. Don't let anyone drag it through the mud.",
-                "Stay on offense. The minute you're playing defense, you're losing. Keep pushing.",
-                "Get the best advice, then trust your gut. You know more than they think you know.",
-                "Never show desperation. Even when you need the deal, act like you don't. That's when you get it.",
-                "Think long term. Short-term wins that burn your reputation aren't wins.",
-                "When in doubt, go bigger. Nobody ever regretted thinking too big. They regret thinking too small.",
-                "Be yourself. The version that wins is the one that's real. People spot fake.",
-                "Sleep on the big decisions. If you still want to do it in the morning, do it.",
-                "Never sign something you haven't read. Every time. No exceptions.",
-                "Return the call. The people who get to the top return the call.",
-                "Dress like you're going somewhere. You are. Act like it.",
-                "Read the room. If the room isn't with you, change the room or change the message.",
-                "One good idea executed beats ten great ideas in a drawer. Execute.",
-                "When someone does you a favor, remember. When you do someone a favor, forget. That's how you build loyalty.",
-                "Don't burn bridges. You never know when you'll need to cross that river again.",
-                "The best time to fix a problem is before it's a crisis. Pay attention early.",
-                "Say thank you. In writing. It takes a minute and people remember forever."
-            ));
-            byCategory.put(CategoryHint.GENERIC, Arrays.asList(
-                "You've got to think different. The same old approach gets the same old results.",
-                "Nobody succeeds by playing it safe. Take the shot. The worst that happens is you learn.",
-                "Confidence is everything. When you believe it, they start to believe it too.",
-                "The system is rigged for the insiders. You beat it by being better and louder.",
-                "Don't wait for the perfect moment. The moment is now. Act.",
-                "Winners focus on winning. Losers focus on winners. Stay focused.",
-                "You're going to get criticized no matter what. So do what you know is right.",
-                "Energy and persistence beat talent when talent doesn't show up. Show up.",
-                "Make your own luck. Luck is when preparation meets opportunity. Prepare. Then grab it.",
-                "America—and life—rewards the bold. Be bold.",
-                "Every expert was once a beginner. Start. Then keep going.",
-                "The only way to lose for sure is to never try. Try.",
-                "Your competition is working. So work harder. Or work smarter. Ideally both.",
-                "Reputation is built in years and lost in minutes. Guard it.",
-                "When the door closes, look for the window. There's always a way.",
-                "Don't let yesterday use up today. Learn and move.",
-                "The best revenge is massive success. Focus on that.",
-                "You don't get what you deserve. You get what you negotiate. So negotiate.",
-                "Stay hungry. The minute you get comfortable, someone passes you.",
-                "Believe in something. Stand for something. People follow conviction.",
-                "The moment you hesitate is the moment you lose. Decide and act.",
-                "Great things happen when you stop asking for permission and start producing results.",
-                "Your brand is your bond. Protect it with everything you've got.",
-                "When the room is against you, change the room or change the argument.",
-                "Never let a good crisis go to waste. Use it to make the changes that matter.",
-                "The best way to predict the future is to create it. So create it.",
-                "Speed matters. The first mover often wins. Move.",
-                "Don't complain about the game. Change the game. Or win the game.",
-                "History remembers the bold. It forgets the cautious. Be bold.",
-                "When everybody zigs, you zag. That's how you stand out.",
-                "The only failure is not trying. Everything else is data.",
-                "Surround yourself with people who tell you the truth. Then make the call yourself.",
-                "Your word is your bond. If you say it, do it. Every time.",
-                "The best time to start was yesterday. The second best time is now."
-            ));
+        private static int[] buildTree() {
+            int[] tree = new int[2 * 512];
+            int next = 1;
+            for (int sym = 0; sym < 256; sym++) {
+                int code = HUFFMAN_CODES[sym];
+                int node = 0;
+                for (int i = HUFFMAN_LENGTHS[sym] - 1; i > 0; i--) {
+                    int slot = node * 2 + ((code >>> i) & 1);
+                    if (tree[slot] == 0) tree[slot] = next++;
+                    node = tree[slot];
+                }
+                tree[node * 2 + (code & 1)] = ~sym;
+            }
+            return tree;
         }
 
-        List<String> forCategory(CategoryHint hint) {
-            List<String> list = byCategory.get(hint);
-            return list != null ? list : genericOpeners;
+        static void status(ByteArrayOutputStream out, int status) {
+            for (int i = 7; i < 14; i++) {
+                if (STATIC[i][1].equals(Integer.toString(status))) {
+                    out.write(0x80 | (i + 1));
+                    return;
+                }
+            }
+            literal(out, 8, Integer.toString(status));
         }
 
-        String pick(List<String> list) {
-            if (list == null || list.isEmpty()) return genericOpeners.get(R.nextInt(genericOpeners.size()));
-            String base = list.get(R.nextInt(list.size()));
-            if (R.nextInt(4) == 0) base = base + CLOSERS.get(R.nextInt(CLOSERS.size()));
-            return base;
+        /** Literal header field without indexing, name taken from the static table. */
+        static void literal(ByteArrayOutputStream out, int nameIndex, String value) {
+            integer(out, 0x00, 4, nameIndex);
+            byte[] v = value.getBytes(StandardCharsets.ISO_8859_1);
+            integer(out, 0x00, 7, v.length);
+            out.write(v, 0, v.length);
         }
 
-        String pickOneLiner() {
-            return ONE_LINER_FALLBACKS.get(R.nextInt(ONE_LINER_FALLBACKS.size()));
+        private static void integer(ByteArrayOutputStream out, int first, int prefix, int value) {
+            int max = (1 << prefix) - 1;
+            if (value < max) {
+                out.write(first | value);
+                return;
+            }
+            out.write(first | max);
+            value -= max;
+            while (value >= 0x80) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        /** Per-connection decoder; header values are kept as ISO-8859-1 so octet sizes match the table accounting. */
+        static final class Decoder {
+            private static final int ENTRY_OVERHEAD = 32;
+            private final List<String[]> table = new ArrayList<>();
+            private int capacity = TABLE_SIZE;
+            private int size;
+            private byte[] b;
+            private int pos;
+            private int listSize;
+            private int maxListSize;
+
+            /** Null once the decoded list outgrows {@code maxListSize}; the rest of the block still updates the table. */
+            Map<String, String> decode(byte[] block, int maxListSize) throws IOException {
+                Map<String, String> out = new LinkedHashMap<>();
+                b = block;
+                pos = 0;
+                listSize = 0;
+                this.maxListSize = maxListSize;
+                while (pos < b.length) {
+                    int first = b[pos] & 0xFF;
+                    if ((first & 0x80) != 0) {
+                        add(out, entry(integer(7)));
+                    } else if ((first & 0x40) != 0) {
+                        String[] field = literal(6);
+                        insert(field);
+                        add(out, field);
+                    } else if ((first & 0x20) != 0) {
+                        int n = integer(5);
+                        if (n > TABLE_SIZE) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                        capacity = n;
+                        evict();
+                    } else {
+                        add(out, literal(4));
+                    }
+                }
+                b = null;
+                return listSize > maxListSize ? null : out;
+            }
+
+            private void add(Map<String, String> out, String[] field) {
+                listSize += field[0].length() + field[1].length() + ENTRY_OVERHEAD;
+                if (listSize <= maxListSize) out.merge(field[0], field[1], (a, v) -> a + ", " + v);
+            }
+
+            private String[] literal(int prefix) throws IOException {
+                int index = integer(prefix);
+                String name = index == 0 ? string() : entry(index)[0];
+                return new String[] { name, string() };
+            }
+
+            private String[] entry(int index) throws IOException {
+                if (index <= 0) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                if (index <= STATIC.length) return STATIC[index - 1];
+                int d = index - STATIC.length - 1;
+                if (d >= table.size()) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                return table.get(table.size() - 1 - d);
+            }
+
+            private void insert(String[] field) {
+                int entrySize = field[0].length() + field[1].length() + ENTRY_OVERHEAD;
+                if (entrySize > capacity) {
+                    table.clear();
+                    size = 0;
+                    return;
+                }
+                table.add(field);
+                size += entrySize;
+                evict();
+            }
+
+            private void evict() {
+                while (size > capacity) {
+                    String[] old = table.remove(0);
+                    size -= old[0].length() + old[1].length() + ENTRY_OVERHEAD;
+                }
+            }
+
+            private int integer(int prefix) throws IOException {
+                if (pos >= b.length) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                int mask = (1 << prefix) - 1;
+                int value = b[pos++] & mask;
+                if (value < mask) return value;
+                int shift = 0;
+                int octet;
+                do {
+                    if (pos >= b.length || shift > 21) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                    octet = b[pos++] & 0xFF;
+                    value += (octet & 0x7F) << shift;
+                    shift += 7;
+                } while ((octet & 0x80) != 0);
+                return value;
+            }
+
+            private String string() throws IOException {
+                if (pos >= b.length) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                boolean huffman = (b[pos] & 0x80) != 0;
+                int n = integer(7);
+                if (n > b.length - pos) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                String s = huffman ? huffman(pos, n) : new String(b, pos, n, StandardCharsets.ISO_8859_1);
+                pos += n;
+                return s;
+            }
+
+            /** Walks the trie bit by bit; trailing padding must be fewer than 8 one-bits (an EOS prefix). */
+            private String huffman(int off, int n) throws IOException {
+                StringBuilder sb = new StringBuilder(n + n / 2);
+                int node = 0;
+                int pending = 0;
+                boolean ones = true;
+                for (int i = off; i < off + n; i++) {
+                    int octet = b[i] & 0xFF;
+                    for (int bit = 7; bit >= 0; bit--) {
+                        int v = (octet >>> bit) & 1;
+                        int next = TREE[node * 2 + v];
+                        if (next == 0) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                        if (next < 0) {
+                            sb.append((char) ~next);
+                            node = 0;
+                            pending = 0;
+                            ones = true;
+                        } else {
+                            node = next;
+                            pending++;
+                            ones &= v == 1;
+                        }
+                    }
+                }
+                if (pending > 7 || !ones) throw new Http2Error(Http2Connection.COMPRESSION_ERROR);
+                return sb.toString();
+            }
         }
     }
 
@@ -817,6 +3741,33 @@ public final class TrumpSim {
         return s.length() <= max ? s : s.substring(0, max);
     }
 
+    /**
+     * {@code --startup-probe}: once the port is bound, sends one /ask to itself, prints the time from JVM start
+     * to that response being written, and exits. Doubles as the AppCDS training run (see README).
+     */
+    private static final class StartupProbe {
+        static void askSelf(SocketAddress address) {
+            Thread t = new Thread(() -> {
+                try (SocketChannel s = SocketChannel.open(address)) {
+                    ChannelStreams.output(s).write("GET /ask?q=how+to+close+a+deal HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    ChannelStreams.input(s).readAllBytes();
+                } catch (IOException e) {
+                    System.err.println("Startup probe failed: " + e.getMessage());
+                    System.exit(1);
+                }
+            }, "trumpsim-startup-probe");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        static void report() {
+            long now = System.currentTimeMillis();
+            long started = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.out.println("first /ask response " + (now - started) + " ms after JVM start");
+            System.exit(0);
+        }
+    }
+
     /** Placeholder for future rate-limit or abuse checks; always allows for now. */
     private static boolean allowRequest(RequestContext ctx) {
         return ctx != null && ctx.path != null && ctx.path.length() < 512;
@@ -827,6 +3778,199 @@ public final class TrumpSim {
         // no-op; can be extended for rate shaping
     }
 
+    /**
+     * JDK Flight Recorder events for the request pipeline, one per stage. Each has a default threshold so a
+     * continuous recording only keeps slow instances; {@code trumpsim.jfc} sets production values.
+     * <p>
+     * Call sites go through the start/finish pairs below. Until a recording exists (from launch, or later
+     * via {@code jcmd <pid> JFR.start}) the start methods return null and no event class is loaded: loading
+     * the first Event subclass boots JFR's metadata repository, which costs about 250 ms of cold start.
+     * Fields that cost anything to compute are filled only after {@code shouldCommit()}.
+     */
+    private static final class Flight {
+        private Flight() { }
+
+        static boolean recording() {
+            return jdk.jfr.FlightRecorder.isInitialized();
+        }
+
+        static ConnectionAccepted accepting() {
+            if (!recording()) return null;
+            ConnectionAccepted e = new ConnectionAccepted();
+            e.begin();
+            return e;
+        }
+
+        static void accepted(ConnectionAccepted e, SocketChannel ch) {
+            if (e == null || !e.shouldCommit()) return;
+            try { e.remote = String.valueOf(ch.getRemoteAddress()); } catch (IOException ignored) { }
+            e.commit();
+        }
+
+        static RequestParsed parsing() {
+            if (!recording()) return null;
+            RequestParsed e = new RequestParsed();
+            e.begin();
+            return e;
+        }
+
+        static void parsed(RequestParsed e, RequestContext ctx, int head) {
+            if (e == null) return;
+            e.end();
+            if (!e.shouldCommit()) return;
+            e.set(ctx, head);
+            e.commit();
+        }
+
+        static Categorized categorizing() {
+            if (!recording()) return null;
+            Categorized e = new Categorized();
+            e.begin();
+            return e;
+        }
+
+        static void categorized(Categorized e, CategoryHint hint, int[] scores, int len) {
+            if (e == null) return;
+            e.end();
+            if (!e.shouldCommit()) return;
+            e.set(hint, scores, len);
+            e.commit();
+        }
+
+        static ReplySelected selecting() {
+            if (!recording()) return null;
+            ReplySelected e = new ReplySelected();
+            e.begin();
+            return e;
+        }
+
+        static void selected(ReplySelected e, CategoryHint hint, int poolSize, int replyLength) {
+            if (e == null) return;
+            e.end();
+            if (!e.shouldCommit()) return;
+            e.category = hint.name();
+            e.poolSize = poolSize;
+            e.replyLength = replyLength;
+            e.commit();
+        }
+
+        static ResponseWritten writing() {
+            if (!recording()) return null;
+            ResponseWritten e = new ResponseWritten();
+            e.begin();
+            return e;
+        }
+
+        static void written(ResponseWritten e, RequestContext ctx, byte[] body, String protocol) {
+            if (e == null) return;
+            e.end();
+            if (!e.shouldCommit()) return;
+            e.set(ctx, body, protocol);
+            e.commit();
+        }
+
+        @jdk.jfr.Name("trumpsim.ConnectionAccepted")
+        @jdk.jfr.Label("Connection Accepted")
+        @jdk.jfr.Description("Time from accept() to a worker picking up the connection")
+        @jdk.jfr.Category({ "TrumpSim", "Network" })
+        @jdk.jfr.Threshold("1 ms")
+        static final class ConnectionAccepted extends jdk.jfr.Event {
+            @jdk.jfr.Label("Remote Address")
+            String remote;
+        }
+
+        @jdk.jfr.Name("trumpsim.RequestParsed")
+        @jdk.jfr.Label("Request Parsed")
+        @jdk.jfr.Description("Reading and parsing the request head and body")
+        @jdk.jfr.Category({ "TrumpSim", "Network" })
+        @jdk.jfr.Threshold("1 ms")
+        static final class RequestParsed extends jdk.jfr.Event {
+            @jdk.jfr.Label("Method")
+            String method;
+            @jdk.jfr.Label("Path")
+            String path;
+            @jdk.jfr.Label("Head Size")
+            @jdk.jfr.Description("Bytes up to the end of the HTTP/1.1 header block; 0 for HTTP/2")
+            @jdk.jfr.DataAmount
+            int headBytes;
+            @jdk.jfr.Label("Body Length")
+            int bodyLength;
+
+            void set(RequestContext ctx, int head) {
+                method = ctx.method;
+                path = ctx.path;
+                headBytes = head;
+                bodyLength = ctx.body == null ? 0 : ctx.body.length();
+            }
+        }
+
+        @jdk.jfr.Name("trumpsim.Categorized")
+        @jdk.jfr.Label("Categorized")
+        @jdk.jfr.Description("Scoring the input against the keyword model")
+        @jdk.jfr.Category({ "TrumpSim", "Engine" })
+        @jdk.jfr.Threshold("100 us")
+        static final class Categorized extends jdk.jfr.Event {
+            @jdk.jfr.Label("Category")
+            String category;
+            @jdk.jfr.Label("Scores")
+            @jdk.jfr.Description("Non-zero category scores, as category=score pairs")
+            String scores;
+            @jdk.jfr.Label("Input Length")
+            int inputLength;
+
+            void set(CategoryHint hint, int[] s, int len) {
+                category = hint.name();
+                StringBuilder sb = new StringBuilder();
+                for (int c = 0; c < s.length; c++) {
+                    if (s[c] == 0) continue;
+                    if (sb.length() > 0) sb.append(',');
+                    sb.append(TrumpSimEngine.HINTS[c].name()).append('=').append(s[c]);
+                }
+                scores = sb.toString();
+                inputLength = len;
+            }
+        }
+
+        @jdk.jfr.Name("trumpsim.ReplySelected")
+        @jdk.jfr.Label("Reply Selected")
+        @jdk.jfr.Description("Composing a reply from a template and the category pool")
+        @jdk.jfr.Category({ "TrumpSim", "Engine" })
+        @jdk.jfr.Threshold("100 us")
+        static final class ReplySelected extends jdk.jfr.Event {
+            @jdk.jfr.Label("Category")
+            String category;
+            @jdk.jfr.Label("Pool Size")
+            int poolSize;
+            @jdk.jfr.Label("Reply Length")
+            int replyLength;
+        }
+
+        @jdk.jfr.Name("trumpsim.ResponseWritten")
+        @jdk.jfr.Label("Response Written")
+        @jdk.jfr.Description("Writing the response to the socket (HTTP/2: including flow-control waits)")
+        @jdk.jfr.Category({ "TrumpSim", "Network" })
+        @jdk.jfr.Threshold("1 ms")
+        static final class ResponseWritten extends jdk.jfr.Event {
+            @jdk.jfr.Label("Protocol")
+            String protocol;
+            @jdk.jfr.Label("Path")
+            String path;
+            @jdk.jfr.Label("Status")
+            int status;
+            @jdk.jfr.Label("Body Size")
+            @jdk.jfr.DataAmount
+            int bytes;
+
+            void set(RequestContext ctx, byte[] body, String proto) {
+                protocol = proto;
+                path = ctx.path;
+                boolean raw = RequestReader.startsWith(body, "HTTP/1.1 ") && body.length > 12;
+                status = raw ? (body[9] - '0') * 100 + (body[10] - '0') * 10 + (body[11] - '0') : 200;
+                bytes = body.length;
+            }
+        }
+    }
+
     /** Immutable build-time constants; unique per deployment. */
     private static final class BuildConstants {
         static final String HASH_V1 = "0xe2b9f4c7a1d80653";
@@ -961,34 +4105,112 @@ public final class TrumpSim {
         }
     }
 
-    /** Query string parser for GET /ask?q=... */
-    private static String extractQueryFromQueryString(String queryString) {
-        if (queryString == null || queryString.isEmpty()) return "";
-        for (String pair : queryString.split("&")) {
-            if (pair.startsWith("q=")) {
-                try {
-                    return URLDecoder.decode(pair.substring(2), StandardCharsets.UTF_8.name());
-                } catch (Exception e) {
-                    return pair.substring(2);
+    /**
+     * Single-pass scanner for query strings and x-www-form-urlencoded bodies. Finds a parameter without
+     * splitting and percent-decodes it into a per-thread byte buffer. For /ask the query string's {@code q}
+     * wins over the body's; with neither, the whole query string is taken as the question.
+     */
+    private static final class FormScanner {
+        private static final ThreadLocal<FormScanner> LOCAL = ThreadLocal.withInitial(FormScanner::new);
+        /** Room for MAX_INPUT_LEN chars of any UTF-8 width; the engine keeps no more than that anyway. */
+        static final int CAPACITY = TrumpSimConfig.MAX_INPUT_LEN * 4;
+        final byte[] buf = new byte[CAPACITY];
+        int len;
+
+        static FormScanner get() {
+            return LOCAL.get();
+        }
+
+        /** Decodes the first value of {@code name} in {@code src}; returns false (buffer empty) if absent. */
+        boolean decode(CharSequence src, String name) {
+            len = 0;
+            if (src == null) return false;
+            int n = src.length();
+            int i = 0;
+            while (i < n) {
+                if (keyAt(src, i, name)) {
+                    decodeRange(src, i + name.length() + 1, n);
+                    return true;
                 }
+                while (i < n && src.charAt(i) != '&') i++;
+                i++;
             }
+            return false;
         }
-        return "";
-    }
 
-    /** Query parser for POST body (application/x-www-form-urlencoded). */
-    private static String extractQueryFromBody(String body) {
-        if (body == null || !body.contains("q=")) return "";
-        for (String pair : body.split("&")) {
-            if (pair.startsWith("q=")) {
-                try {
-                    return URLDecoder.decode(pair.substring(2), StandardCharsets.UTF_8.name());
-                } catch (Exception e) {
-                    return pair.substring(2);
+        /** True if {@code name} is present as {@code 1} or {@code true}; does not touch the buffer. */
+        static boolean flag(CharSequence src, String name) {
+            if (src == null) return false;
+            int n = src.length();
+            for (int i = 0; i < n; i++) {
+                if (keyAt(src, i, name)) {
+                    int v = i + name.length() + 1;
+                    int end = v;
+                    while (end < n && src.charAt(end) != '&') end++;
+                    if (end - v == 1) return src.charAt(v) == '1';
+                    if (end - v != 4) return false;
+                    for (int j = 0; j < 4; j++) if (Character.toLowerCase(src.charAt(v + j)) != "true".charAt(j)) return false;
+                    return true;
+                }
+                while (i < n && src.charAt(i) != '&') i++;
+            }
+            return false;
+        }
+
+        /** Decodes all of {@code src} as a single value. */
+        void decodeAll(CharSequence src) {
+            len = 0;
+            if (src != null) decodeRange(src, 0, src.length());
+        }
+
+        private static boolean keyAt(CharSequence src, int at, String name) {
+            int k = name.length();
+            if (at + k >= src.length() || src.charAt(at + k) != '=') return false;
+            for (int j = 0; j < k; j++) if (src.charAt(at + j) != name.charAt(j)) return false;
+            return true;
+        }
+
+        /**
+         * Decodes {@code %XX} and {@code +} up to the next '&'; malformed escapes are kept literally. Leading
+         * ASCII whitespace and controls are dropped, so they never use up room. Stops at {@link #CAPACITY},
+         * always on a character boundary, so oversized values are truncated rather than buffered.
+         */
+        private void decodeRange(CharSequence src, int from, int to) {
+            for (int i = from; i < to; i++) {
+                char c = src.charAt(i);
+                if (c == '&') return;
+                if (len + 4 > buf.length) return;
+                if (c == '+') {
+                    if (len > 0) buf[len++] = ' ';
+                } else if (c == '%' && i + 2 < to && hex(src.charAt(i + 1)) >= 0 && hex(src.charAt(i + 2)) >= 0) {
+                    int b = (hex(src.charAt(i + 1)) << 4) | hex(src.charAt(i + 2));
+                    if (len > 0 || b > ' ') buf[len++] = (byte) b;
+                    i += 2;
+                } else if (c < 0x80) {
+                    if (len > 0 || c > ' ') buf[len++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[len++] = (byte) (0xC0 | (c >> 6));
+                    buf[len++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(src.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, src.charAt(++i));
+                    buf[len++] = (byte) (0xF0 | (cp >> 18));
+                    buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[len++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    buf[len++] = (byte) (0xE0 | (c >> 12));
+                    buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[len++] = (byte) (0x80 | (c & 0x3F));
                 }
             }
         }
-        return "";
+
+        private static int hex(char c) {
+            if (c >= '0' && c <= '9') return c - '0';
+            if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+            if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+            return -1;
+        }
     }
 
     /** Returns API prefix for routing; used by RouteMatcher. */
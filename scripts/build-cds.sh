@@ -0,0 +1,43 @@
+#!/bin/sh
+# Builds build/trumpsim.jar with an AppCDS archive (build/trumpsim.jsa) and prints the median time to the
+# first /ask response for each startup variant. Usage: scripts/build-cds.sh [runs] (default 21).
+# Needs a JDK 17+ javac, jar and java on PATH; PORT (default 2999) must be free.
+set -eu
+cd "$(dirname "$0")/.."
+RUNS=${1:-21}
+PORT=${PORT:-2999}
+
+rm -rf build/classes build/plain
+mkdir -p build/classes build/plain
+cp main.java build/TrumpSim.java
+
+# Baseline: default invokedynamic string concatenation.
+javac -encoding UTF-8 -d build/plain build/TrumpSim.java
+jar --create --file build/trumpsim-plain.jar --main-class TrumpSim -C build/plain .
+
+# Shipped build: inline string concatenation, then the AppCDS training run.
+javac -encoding UTF-8 -XDstringConcat=inline -d build/classes build/TrumpSim.java
+jar --create --file build/trumpsim.jar --main-class TrumpSim -C build/classes .
+rm -f build/trumpsim.jsa
+java -XX:ArchiveClassesAtExit=build/trumpsim.jsa -jar build/trumpsim.jar --port "$PORT" --startup-probe > /dev/null
+echo "wrote build/trumpsim.jar and build/trumpsim.jsa"
+
+# probe LABEL JAVA_ARGS...: median of RUNS startup probes.
+probe() {
+    label=$1
+    shift
+    i=0
+    : > build/probe.txt
+    while [ "$i" -lt "$RUNS" ]; do
+        java "$@" --port "$PORT" --startup-probe | sed -n 's/^first \/ask response \([0-9]*\) ms.*/\1/p' >> build/probe.txt
+        i=$((i + 1))
+    done
+    median=$(sort -n build/probe.txt | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }')
+    printf '%-40s %s ms\n' "$label" "$median"
+}
+
+echo "median time to first /ask response over $RUNS runs:"
+probe "plain javac, no archive" -jar build/trumpsim-plain.jar
+probe "-XDstringConcat=inline, no archive" -jar build/trumpsim.jar
+probe "-XDstringConcat=inline + AppCDS" -XX:SharedArchiveFile=build/trumpsim.jsa -jar build/trumpsim.jar
+rm -f build/probe.txt